@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.model.Controller;
+import domain.model.Request;
+import domain.model.Response;
+import enums.RequestMethod;
+import infrastructure.api.Route;
+import infrastructure.api.Router;
+import infrastructure.container.Container;
+
+/**
+ * Cost of calling a route's handler once the route is resolved: the
+ * reflective lookup Router used to do on every request against a bound
+ * MethodHandle, a route linked by name at registration and a route declared
+ * with a method reference. The handler returns a prebuilt response so only the
+ * dispatch itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HandlerDispatchBenchmark {
+    private final OutputStream output = OutputStream.nullOutputStream();
+    private Request request;
+    private Route namedRoute;
+    private Route linkedRoute;
+    private Route typedRoute;
+    private MethodHandle boundHandle;
+
+    public static class StaticController implements Controller {
+        private final Response response = new Response.Builder()
+                .statusCode(200)
+                .statusMessage("OK")
+                .body("OK")
+                .build();
+
+        public Response okHandler(Request request, OutputStream output) {
+            return response;
+        }
+
+        @Override
+        public List<Route> getRoutes() {
+            return List.of(
+                    new Route.Builder()
+                            .setPath("/named")
+                            .setMethod("GET")
+                            .setHandler("okHandler")
+                            .setClassName(getClass().toString())
+                            .setMiddlewares(new String[] {})
+                            .build(),
+                    Route.of(RequestMethod.GET, "/typed", this::okHandler));
+        }
+    }
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        StaticController controller = Container.getOrCreate(StaticController.class);
+        List<Route> routes = controller.getRoutes();
+        namedRoute = routes.get(0);
+        typedRoute = routes.get(1);
+
+        // Registration links the named route, so keep an unlinked copy for the reflective path
+        linkedRoute = new Route.Builder()
+                .setPath(namedRoute.getPath())
+                .setMethod(namedRoute.getMethod())
+                .setHandler(namedRoute.getHandler())
+                .setClassName(namedRoute.getClassName())
+                .build();
+        Router.registerControllers(List.of(() -> List.of(linkedRoute)));
+
+        boundHandle = MethodHandles.publicLookup()
+                .findVirtual(StaticController.class, "okHandler",
+                        MethodType.methodType(Response.class, Request.class, OutputStream.class))
+                .bindTo(controller);
+
+        request = new Request();
+        request.setMethod(RequestMethod.GET);
+        request.setPath("/named");
+    }
+
+    @Benchmark
+    public Object reflective() throws Exception {
+        Class<?> controllerClass = Class.forName(namedRoute.getClassName().replace("class ", ""));
+        Object controllerInstance = Container.getOrCreate(controllerClass);
+        return controllerClass.getMethod(namedRoute.getHandler(), Request.class, OutputStream.class)
+                .invoke(controllerInstance, request, output);
+    }
+
+    @Benchmark
+    public Response methodHandle() throws Throwable {
+        return (Response) boundHandle.invokeExact(request, output);
+    }
+
+    @Benchmark
+    public Response linked() throws Exception {
+        return linkedRoute.getRouteHandler().handle(request, output);
+    }
+
+    @Benchmark
+    public Response typed() throws Exception {
+        return typedRoute.getRouteHandler().handle(request, output);
+    }
+}
@@ -0,0 +1,204 @@
+package benchmark;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.model.Configuration;
+import enums.ServerEngine;
+import infrastructure.api.controller.BaseController;
+import infrastructure.container.Container;
+import infrastructure.server.HttpServer;
+import infrastructure.server.Server;
+import infrastructure.server.nio.NioServer;
+
+/**
+ * The real server started in-process on a loopback port, with every
+ * benchmark thread a keep-alive client sending one request at a time and
+ * reading the whole response back. Throughput is requests per second across
+ * all clients, and sample time gives the latency distribution of a round
+ * trip. The access log is on and written to /dev/null.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoopbackBenchmark {
+    private static final byte[] REQUEST = ("GET /echo/benchmark HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "User-Agent: loopback-benchmark\r\n"
+            + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StandardCharsets.US_ASCII);
+
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({ "blocking", "nio" })
+        public String engine;
+
+        private HttpServer server;
+        private Thread thread;
+        private InetSocketAddress address;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException, InterruptedException {
+            LoggerContext context = (LoggerContext) LogManager.getContext(false);
+            context.getConfiguration().getLoggerConfig(LogManager.ROOT_LOGGER_NAME)
+                    .setLevel(org.apache.logging.log4j.Level.WARN);
+            context.updateLoggers();
+
+            Configuration configuration = new Configuration();
+            configuration.setPort(freePort());
+            configuration.setEngine(ServerEngine.fromString(engine));
+            configuration.setMaxRequestsPerConnection(0);
+            configuration.setAccessLogFile("/dev/null");
+            Container.register(Configuration.class.getSimpleName(), Configuration.class, configuration);
+
+            server = ServerEngine.NIO == configuration.getEngine() ? new NioServer(configuration)
+                    : new Server(configuration);
+            server.registerControllers(List.of(new BaseController()));
+            thread = Thread.ofPlatform().name("Loopback-Server").start(() -> server.start(true));
+            address = new InetSocketAddress(InetAddress.getLoopbackAddress(), configuration.getPort());
+            awaitListening();
+        }
+
+        private static int freePort() throws IOException {
+            try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+                probe.bind(new InetSocketAddress(0));
+                return ((InetSocketAddress) probe.getLocalAddress()).getPort();
+            }
+        }
+
+        private void awaitListening() throws IOException, InterruptedException {
+            for (int attempt = 0;; attempt++) {
+                try {
+                    SocketChannel.open(address).close();
+                    return;
+                } catch (IOException e) {
+                    if (attempt == 100) {
+                        throw e;
+                    }
+                    Thread.sleep(50);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException, InterruptedException {
+            server.close();
+            thread.join();
+            Container.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private final ByteBuffer request = ByteBuffer.wrap(REQUEST);
+        private final ByteBuffer response = ByteBuffer.allocate(16 * 1024);
+        private SocketChannel channel;
+
+        @Setup(Level.Trial)
+        public void connect(ServerState server) throws IOException {
+            channel = SocketChannel.open(server.address);
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            channel.close();
+        }
+
+        // Sends the request and reads until the head and the body it announces are in
+        int roundTrip() throws IOException {
+            request.rewind();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+
+            response.clear();
+            int headEnd = -1;
+            int length = 0;
+            while (true) {
+                if (channel.read(response) < 0) {
+                    throw new EOFException("Server closed the connection");
+                }
+                if (headEnd < 0) {
+                    headEnd = indexOfHeadEnd(response);
+                    if (headEnd < 0) {
+                        continue;
+                    }
+                    length = headEnd + contentLength(response, headEnd);
+                }
+                if (response.position() >= length) {
+                    return length;
+                }
+            }
+        }
+
+        private static int indexOfHeadEnd(ByteBuffer buffer) {
+            byte[] bytes = buffer.array();
+            for (int i = 3; i < buffer.position(); i++) {
+                if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private static int contentLength(ByteBuffer buffer, int headEnd) {
+            byte[] bytes = buffer.array();
+            for (int i = 0; i + CONTENT_LENGTH.length < headEnd; i++) {
+                if (matchesIgnoreCase(bytes, i, CONTENT_LENGTH)) {
+                    int value = 0;
+                    for (int j = i + CONTENT_LENGTH.length; j < headEnd; j++) {
+                        if (bytes[j] >= '0' && bytes[j] <= '9') {
+                            value = value * 10 + bytes[j] - '0';
+                        } else if (bytes[j] == '\r') {
+                            break;
+                        }
+                    }
+                    return value;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean matchesIgnoreCase(byte[] bytes, int offset, byte[] lowerCase) {
+            for (int i = 0; i < lowerCase.length; i++) {
+                if ((bytes[offset + i] | 0x20) != lowerCase[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Benchmark
+    public int echo(Client client) throws IOException {
+        return client.roundTrip();
+    }
+}
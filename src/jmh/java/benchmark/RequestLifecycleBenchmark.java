@@ -0,0 +1,142 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import infrastructure.api.Router;
+import infrastructure.api.controller.BaseController;
+import infrastructure.container.Container;
+import infrastructure.http.HttpRequestParser;
+import infrastructure.logging.AccessLog;
+import infrastructure.server.BufferPool;
+import infrastructure.server.ResponseQueue;
+import infrastructure.server.WriteQueue;
+
+/**
+ * Everything a keep-alive connection does for a batch of pipelined requests,
+ * as the blocking engine does it: parse from the read buffer, route to the
+ * real handlers, serialize and write the responses to a loopback socket. Run
+ * with -prof gc, gc.alloc.rate.norm is the number of bytes allocated per
+ * request. Request logging is switched off so only the server's own
+ * allocations are counted, the access log is on and written to /dev/null.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestLifecycleBenchmark {
+    private static final int BATCH = 16;
+
+    private static final String ECHO = "GET /echo/benchmark HTTP/1.1\r\n"
+            + "Host: localhost:4221\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+            + "Accept-Language: en-US,en;q=0.5\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n";
+
+    private static final String USER_AGENT = "GET /user-agent HTTP/1.1\r\n"
+            + "Host: localhost:4221\r\n"
+            + "User-Agent: curl/8.5.0\r\n"
+            + "Accept: */*\r\n"
+            + "\r\n";
+
+    private byte[] batch;
+    private ByteBuffer buffer;
+    private HttpRequestParser parser;
+    private ResponseQueue responses;
+    private WriteQueue writes;
+    private AccessLog accessLog;
+    private SocketChannel server;
+    private SocketChannel client;
+    private Thread drainer;
+
+    @Setup
+    public void setup() throws IOException {
+        LoggerContext context = (LoggerContext) LogManager.getContext(false);
+        context.getConfiguration().getLoggerConfig(LogManager.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+        context.updateLoggers();
+
+        Configuration configuration = new Configuration();
+        configuration.setAccessLogFile("/dev/null");
+        Container.register(Configuration.class.getSimpleName(), Configuration.class, configuration);
+        Router.registerControllers(List.of(new BaseController()));
+
+        batch = (ECHO + USER_AGENT).repeat(BATCH / 2).getBytes(StandardCharsets.ISO_8859_1);
+        buffer = ByteBuffer.allocate(batch.length);
+        parser = new HttpRequestParser(configuration);
+        accessLog = Container.getOrCreate(AccessLog.class, configuration);
+        responses = new ResponseQueue(null, parser::recycle, accessLog);
+        writes = new WriteQueue(Container.getOrCreate(BufferPool.class, configuration));
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            client = SocketChannel.open(listener.getLocalAddress());
+            server = listener.accept();
+        }
+
+        // Reads and drops the responses so the socket never fills up
+        drainer = Thread.ofPlatform().daemon().start(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(64 * 1024);
+            try {
+                while (client.read(sink.clear()) >= 0) {
+                    // Discard
+                }
+            } catch (IOException e) {
+                // Closed on tear down
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        writes.close();
+        accessLog.close();
+        server.close();
+        client.close();
+        drainer.join();
+        Container.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pipelinedBatch() throws IOException {
+        buffer.clear().put(batch).flip();
+        Request request;
+        while ((request = parser.parse(buffer)) != null) {
+            responses.add(request);
+        }
+
+        responses.dispatch();
+        responses.drain(writes);
+        writes.writeTo(server);
+    }
+}
@@ -0,0 +1,131 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import domain.model.Request;
+import enums.RequestMethod;
+import infrastructure.http.HttpRequestParser;
+
+/**
+ * Compares HttpRequestParser with the readLine/split loop it replaced. Each
+ * invocation parses a batch of pipelined requests from one connection, so the
+ * per-connection reader or parser is amortised. Run with -prof gc to get
+ * gc.alloc.rate.norm, the bytes allocated per request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestParserBenchmark {
+    private static final int BATCH = 16;
+
+    private static final String GET = "GET /echo/benchmark HTTP/1.1\r\n"
+            + "Host: localhost:4221\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+            + "Accept-Language: en-US,en;q=0.5\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n";
+
+    private static final String POST = "POST /files/upload.txt HTTP/1.1\r\n"
+            + "Host: localhost:4221\r\n"
+            + "User-Agent: curl/8.5.0\r\n"
+            + "Accept: */*\r\n"
+            + "Content-Type: application/octet-stream\r\n"
+            + "Content-Length: 64\r\n"
+            + "\r\n"
+            + "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Param({ "GET", "POST" })
+    public String request;
+
+    private byte[] bytes;
+    private HttpRequestParser parser;
+
+    @Setup
+    public void setup() {
+        String raw = "GET".equals(request) ? GET : POST;
+        bytes = raw.repeat(BATCH).getBytes(StandardCharsets.ISO_8859_1);
+        parser = new HttpRequestParser(100, 16384, 10 * 1024 * 1024, 8L * 1024 * 1024 * 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void byteParser(Blackhole blackhole) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Request parsed;
+        while ((parsed = parser.parse(buffer)) != null) {
+            blackhole.consume(parsed);
+        }
+    }
+
+    // Reads what routing and the handlers read, which forces the lazy decoding
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void byteParserRouted(Blackhole blackhole) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Request parsed;
+        while ((parsed = parser.parse(buffer)) != null) {
+            blackhole.consume(parsed.getPath());
+            blackhole.consume(parsed.getHeader("Connection"));
+            blackhole.consume(parsed.getBody());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void legacyReadLineSplit(Blackhole blackhole) throws IOException {
+        BufferedReader input = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(legacyParse(input));
+        }
+    }
+
+    // Request parsing as done by Server.manageRequestProcessing before the byte parser
+    private static Request legacyParse(BufferedReader input) throws IOException {
+        Request request = new Request();
+        String line = input.readLine();
+        String[] parts = line.split(" ");
+        request.setMethod(RequestMethod.valueOf(parts[0]));
+        request.setPath(parts[1]);
+        request.setVersion(parts[2]);
+
+        while (!(line = input.readLine()).isEmpty()) {
+            String[] headers = line.split(":", 2);
+            if (headers.length == 2) {
+                request.getHeaders().add(headers[0].trim(), headers[1].trim());
+            }
+        }
+
+        if (request.getHeaders().contains("Content-Length")) {
+            int contentLength = Integer.parseInt(request.getHeaders().get("Content-Length").trim());
+            char[] bodyChars = new char[contentLength];
+            input.read(bodyChars, 0, contentLength);
+            request.setBody(new String(bodyChars));
+        }
+        return request;
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.model.Response;
+import infrastructure.http.ResponseSerializer;
+
+/**
+ * Serializing a response as WriteQueue does: head and body into a pooled
+ * direct buffer, or a heap buffer of its own for heads that do not fit. The
+ * response carries the headers the handlers usually set, with a String body
+ * that is encoded on the way or a byte body that is copied.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseSerializerBenchmark {
+    @Param({ "string", "bytes" })
+    public String body;
+
+    @Param({ "16", "16384" })
+    public int bodySize;
+
+    private Response response;
+    private int bodyLength;
+    private ByteBuffer target;
+
+    @Setup
+    public void setup() {
+        String text = "x".repeat(bodySize);
+        Response.Builder builder = new Response.Builder()
+                .statusCode(200)
+                .statusMessage("OK")
+                .contentType("text/plain")
+                .contentLength(String.valueOf(bodySize))
+                .addHeader("Connection", "keep-alive")
+                .addHeader("Vary", "Accept-Encoding")
+                .addHeader("ETag", "\"1a2b3c-4d5e6f\"");
+        response = "string".equals(body) ? builder.body(text).build() : builder.byteBody(text.getBytes()).build();
+        bodyLength = ResponseSerializer.bodyLength(response);
+        target = ByteBuffer.allocateDirect(64 * 1024);
+    }
+
+    @Benchmark
+    public ByteBuffer pooledHeadAndBody() {
+        target.clear();
+        ResponseSerializer.writeHead(response, bodyLength, target);
+        ResponseSerializer.writeBody(response, target);
+        return target;
+    }
+
+    @Benchmark
+    public ByteBuffer heapHead() {
+        return ResponseSerializer.head(response, bodyLength);
+    }
+}
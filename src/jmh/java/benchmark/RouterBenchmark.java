@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import domain.model.Request;
+import domain.model.Response;
+import enums.RequestMethod;
+import infrastructure.api.Route;
+import infrastructure.api.Router;
+import infrastructure.container.Container;
+
+/**
+ * Router.resolve against route tables of growing size, half of them static
+ * paths and half with a path parameter. The routes looked up are the last
+ * ones registered, and a path matching none of them goes to the 404 route.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+    @Param({ "10", "100", "1000" })
+    public int routes;
+
+    private Router router;
+    private Request staticRequest;
+    private Request parameterRequest;
+    private Request missingRequest;
+
+    private static Response ok(Request request, OutputStream output) {
+        return new Response.Builder().statusCode(200).statusMessage("OK").build();
+    }
+
+    @Setup
+    public void setup() {
+        List<Route> table = new ArrayList<>(routes);
+        for (int i = 0; i < routes; i++) {
+            String path = i % 2 == 0 ? "/api/resource" + i : "/api/resource" + i + "/{id}";
+            table.add(Route.of(RequestMethod.GET, path, RouterBenchmark::ok));
+        }
+        Router.registerControllers(List.of(() -> table));
+        router = new Router();
+
+        // Every size is even, so the last route has a parameter and the one before it does not
+        staticRequest = request("/api/resource" + (routes - 2));
+        parameterRequest = request("/api/resource" + (routes - 1) + "/42");
+        missingRequest = request("/api/unknown/path");
+    }
+
+    private static Request request(String path) {
+        Request request = new Request();
+        request.setMethod(RequestMethod.GET);
+        request.setPath(path);
+        return request;
+    }
+
+    @TearDown
+    public void tearDown() {
+        Container.clear();
+    }
+
+    @Benchmark
+    public Route staticPath() {
+        return router.resolve(staticRequest);
+    }
+
+    @Benchmark
+    public Route pathParameter() {
+        return router.resolve(parameterRequest);
+    }
+
+    @Benchmark
+    public Route notFound() {
+        return router.resolve(missingRequest);
+    }
+}
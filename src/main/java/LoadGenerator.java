@@ -0,0 +1,41 @@
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import infrastructure.loadgen.LoadOptions;
+import infrastructure.loadgen.LoadReport;
+import infrastructure.loadgen.LoadTest;
+
+// Drives load at a server on localhost and prints the latency it measured, see LoadOptions.usage()
+public class LoadGenerator {
+  private final static Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+  public static void main(String[] args) {
+    if (args.length == 1 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+      System.out.print(LoadOptions.usage());
+      return;
+    }
+
+    LoadOptions options;
+    try {
+      options = LoadOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.print(LoadOptions.usage());
+      LogManager.shutdown();
+      System.exit(2);
+      return;
+    }
+
+    try {
+      logger.info("Load test: {}", options);
+      LoadReport report = new LoadTest(options).run();
+      System.out.print(report.format());
+    } catch (IOException e) {
+      logger.error("Load test failed: {}", e.getMessage());
+    } finally {
+      LogManager.shutdown();
+    }
+  }
+}
@@ -6,10 +6,14 @@ import org.apache.logging.log4j.Logger;
 
 import domain.model.Configuration;
 import domain.model.Controller;
+import enums.ServerEngine;
 import infrastructure.api.controller.BaseController;
+import infrastructure.api.controller.MetricsController;
 import infrastructure.config.YamlConfigurationLoader;
 import infrastructure.container.Container;
+import infrastructure.server.HttpServer;
 import infrastructure.server.Server;
+import infrastructure.server.nio.NioServer;
 
 public class Main {
   private final static Logger logger = LogManager.getLogger(Main.class);
@@ -27,14 +31,36 @@ public class Main {
 
     // Controllers
     List<Controller> controllers = List.of(
-        Container.getOrCreate(BaseController.class));
+        Container.getOrCreate(BaseController.class),
+        Container.getOrCreate(MetricsController.class));
 
     logger.info("Starting server");
-    try (Server serverSocket = Container.register(Server.class.getSimpleName(), Server.class, serverConfiguration)) {
+    Class<? extends HttpServer> engine = serverConfiguration.getEngine() == ServerEngine.NIO
+        ? NioServer.class
+        : Server.class;
+    try (HttpServer serverSocket = Container.register(engine.getSimpleName(), engine, serverConfiguration)) {
       serverSocket.registerControllers(controllers);
+      drainOnShutdown(serverSocket);
       serverSocket.start(true);
     } catch (IOException e) {
       logger.error("IOException: {}", e.getMessage());
+    } finally {
+      // Flushes the async loggers, their shutdown hook is disabled so draining can still log
+      LogManager.shutdown();
     }
   }
+
+  // On SIGTERM the server finishes in-flight requests before the JVM exits, start() returns once it has
+  private static void drainOnShutdown(HttpServer server) {
+    Thread main = Thread.currentThread();
+    Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("Shutdown").unstarted(() -> {
+      logger.info("Shutting down");
+      server.drain();
+      try {
+        main.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+  }
 }
@@ -8,10 +8,38 @@ import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import enums.ExecutorType;
+import enums.ServerEngine;
+
 public class Configuration {
     private static final Logger logger = LogManager.getLogger(Configuration.class);
     private Integer port = 8080;
     private String directory = "/tmp";
+    private ServerEngine engine = ServerEngine.BLOCKING;
+    private Integer eventLoops = 0;
+    private ExecutorType executorType = ExecutorType.VIRTUAL;
+    private Integer workerThreads = 200;
+    private Integer maxConnections = 10000;
+    private Integer maxHeaderCount = 100;
+    private Integer maxHeaderSize = 16384;
+    private Integer maxBodySize = 10 * 1024 * 1024;
+    private Boolean parallelPipelining = false;
+    private Integer fileCacheMaxBytes = 64 * 1024 * 1024;
+    private Integer fileCacheMaxFileSize = 1024 * 1024;
+    private Integer compressionMinSize = 256;
+    private Integer compressionCacheMaxBytes = 8 * 1024 * 1024;
+    private Long maxStreamedBodySize = 8L * 1024 * 1024 * 1024;
+    private Integer directBufferPoolMaxBytes = 64 * 1024 * 1024;
+    private Integer maxRequestsPerConnection = 1000;
+    private Integer idleTimeout = 30000;
+    private Integer headerTimeout = 10000;
+    private Integer drainTimeout = 30000;
+    private Integer acceptors = 1;
+    private Integer backlog = 1024;
+    private String accessLogFile = "";
+    private Integer accessLogBufferSize = 8192;
+    private String authToken = "";
+    private String corsAllowedOrigin = "*";
 
     private static final String COMMAND = "command";
     private static final String VALUE = "value";
@@ -27,6 +55,31 @@ public class Configuration {
     public Configuration(Configuration other) {
         this.port = other.port;
         this.directory = other.directory;
+        this.engine = other.engine;
+        this.eventLoops = other.eventLoops;
+        this.executorType = other.executorType;
+        this.workerThreads = other.workerThreads;
+        this.maxConnections = other.maxConnections;
+        this.maxHeaderCount = other.maxHeaderCount;
+        this.maxHeaderSize = other.maxHeaderSize;
+        this.maxBodySize = other.maxBodySize;
+        this.parallelPipelining = other.parallelPipelining;
+        this.fileCacheMaxBytes = other.fileCacheMaxBytes;
+        this.fileCacheMaxFileSize = other.fileCacheMaxFileSize;
+        this.compressionMinSize = other.compressionMinSize;
+        this.compressionCacheMaxBytes = other.compressionCacheMaxBytes;
+        this.maxStreamedBodySize = other.maxStreamedBodySize;
+        this.directBufferPoolMaxBytes = other.directBufferPoolMaxBytes;
+        this.maxRequestsPerConnection = other.maxRequestsPerConnection;
+        this.idleTimeout = other.idleTimeout;
+        this.headerTimeout = other.headerTimeout;
+        this.drainTimeout = other.drainTimeout;
+        this.acceptors = other.acceptors;
+        this.backlog = other.backlog;
+        this.accessLogFile = other.accessLogFile;
+        this.accessLogBufferSize = other.accessLogBufferSize;
+        this.authToken = other.authToken;
+        this.corsAllowedOrigin = other.corsAllowedOrigin;
     }
 
     public Configuration(Integer port) {
@@ -36,6 +89,31 @@ public class Configuration {
     public Configuration(Builder builder) {
         this.port = builder.port;
         this.directory = builder.directory;
+        this.engine = builder.engine;
+        this.eventLoops = builder.eventLoops;
+        this.executorType = builder.executorType;
+        this.workerThreads = builder.workerThreads;
+        this.maxConnections = builder.maxConnections;
+        this.maxHeaderCount = builder.maxHeaderCount;
+        this.maxHeaderSize = builder.maxHeaderSize;
+        this.maxBodySize = builder.maxBodySize;
+        this.parallelPipelining = builder.parallelPipelining;
+        this.fileCacheMaxBytes = builder.fileCacheMaxBytes;
+        this.fileCacheMaxFileSize = builder.fileCacheMaxFileSize;
+        this.compressionMinSize = builder.compressionMinSize;
+        this.compressionCacheMaxBytes = builder.compressionCacheMaxBytes;
+        this.maxStreamedBodySize = builder.maxStreamedBodySize;
+        this.directBufferPoolMaxBytes = builder.directBufferPoolMaxBytes;
+        this.maxRequestsPerConnection = builder.maxRequestsPerConnection;
+        this.idleTimeout = builder.idleTimeout;
+        this.headerTimeout = builder.headerTimeout;
+        this.drainTimeout = builder.drainTimeout;
+        this.acceptors = builder.acceptors;
+        this.backlog = builder.backlog;
+        this.accessLogFile = builder.accessLogFile;
+        this.accessLogBufferSize = builder.accessLogBufferSize;
+        this.authToken = builder.authToken;
+        this.corsAllowedOrigin = builder.corsAllowedOrigin;
     }
 
     public Integer getPort() {
@@ -54,9 +132,234 @@ public class Configuration {
         this.directory = directory;
     }
 
+    public ServerEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(ServerEngine engine) {
+        this.engine = engine;
+    }
+
+    public Integer getEventLoops() {
+        return eventLoops;
+    }
+
+    public void setEventLoops(Integer eventLoops) {
+        this.eventLoops = eventLoops;
+    }
+
+    public ExecutorType getExecutorType() {
+        return executorType;
+    }
+
+    public void setExecutorType(ExecutorType executorType) {
+        this.executorType = executorType;
+    }
+
+    public Integer getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(Integer workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Integer getMaxHeaderCount() {
+        return maxHeaderCount;
+    }
+
+    public void setMaxHeaderCount(Integer maxHeaderCount) {
+        this.maxHeaderCount = maxHeaderCount;
+    }
+
+    public Integer getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    public void setMaxHeaderSize(Integer maxHeaderSize) {
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    public Integer getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(Integer maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public Boolean getParallelPipelining() {
+        return parallelPipelining;
+    }
+
+    public void setParallelPipelining(Boolean parallelPipelining) {
+        this.parallelPipelining = parallelPipelining;
+    }
+
+    public Integer getFileCacheMaxBytes() {
+        return fileCacheMaxBytes;
+    }
+
+    public void setFileCacheMaxBytes(Integer fileCacheMaxBytes) {
+        this.fileCacheMaxBytes = fileCacheMaxBytes;
+    }
+
+    public Integer getFileCacheMaxFileSize() {
+        return fileCacheMaxFileSize;
+    }
+
+    public void setFileCacheMaxFileSize(Integer fileCacheMaxFileSize) {
+        this.fileCacheMaxFileSize = fileCacheMaxFileSize;
+    }
+
+    public Integer getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public void setCompressionMinSize(Integer compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public Integer getCompressionCacheMaxBytes() {
+        return compressionCacheMaxBytes;
+    }
+
+    public void setCompressionCacheMaxBytes(Integer compressionCacheMaxBytes) {
+        this.compressionCacheMaxBytes = compressionCacheMaxBytes;
+    }
+
+    public Long getMaxStreamedBodySize() {
+        return maxStreamedBodySize;
+    }
+
+    public void setMaxStreamedBodySize(Long maxStreamedBodySize) {
+        this.maxStreamedBodySize = maxStreamedBodySize;
+    }
+
+    public Integer getDirectBufferPoolMaxBytes() {
+        return directBufferPoolMaxBytes;
+    }
+
+    public void setDirectBufferPoolMaxBytes(Integer directBufferPoolMaxBytes) {
+        this.directBufferPoolMaxBytes = directBufferPoolMaxBytes;
+    }
+
+    public Integer getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(Integer maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    public Integer getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Integer idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Integer getHeaderTimeout() {
+        return headerTimeout;
+    }
+
+    public void setHeaderTimeout(Integer headerTimeout) {
+        this.headerTimeout = headerTimeout;
+    }
+
+    public Integer getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(Integer drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public Integer getAcceptors() {
+        return acceptors;
+    }
+
+    public void setAcceptors(Integer acceptors) {
+        this.acceptors = acceptors;
+    }
+
+    public Integer getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(Integer backlog) {
+        this.backlog = backlog;
+    }
+
+    public String getAccessLogFile() {
+        return accessLogFile;
+    }
+
+    public void setAccessLogFile(String accessLogFile) {
+        this.accessLogFile = accessLogFile;
+    }
+
+    public Integer getAccessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
+    public void setAccessLogBufferSize(Integer accessLogBufferSize) {
+        this.accessLogBufferSize = accessLogBufferSize;
+    }
+
+    public String getAuthToken() {
+        return authToken;
+    }
+
+    public void setAuthToken(String authToken) {
+        this.authToken = authToken;
+    }
+
+    public String getCorsAllowedOrigin() {
+        return corsAllowedOrigin;
+    }
+
+    public void setCorsAllowedOrigin(String corsAllowedOrigin) {
+        this.corsAllowedOrigin = corsAllowedOrigin;
+    }
+
     public static class Builder {
         private Integer port;
         private String directory = "/tmp";
+        private ServerEngine engine = ServerEngine.BLOCKING;
+        private Integer eventLoops = 0;
+        private ExecutorType executorType = ExecutorType.VIRTUAL;
+        private Integer workerThreads = 200;
+        private Integer maxConnections = 10000;
+        private Integer maxHeaderCount = 100;
+        private Integer maxHeaderSize = 16384;
+        private Integer maxBodySize = 10 * 1024 * 1024;
+        private Boolean parallelPipelining = false;
+        private Integer fileCacheMaxBytes = 64 * 1024 * 1024;
+        private Integer fileCacheMaxFileSize = 1024 * 1024;
+        private Integer compressionMinSize = 256;
+        private Integer compressionCacheMaxBytes = 8 * 1024 * 1024;
+        private Long maxStreamedBodySize = 8L * 1024 * 1024 * 1024;
+        private Integer directBufferPoolMaxBytes = 64 * 1024 * 1024;
+        private Integer maxRequestsPerConnection = 1000;
+        private Integer idleTimeout = 30000;
+        private Integer headerTimeout = 10000;
+        private Integer drainTimeout = 30000;
+        private Integer acceptors = 1;
+        private Integer backlog = 1024;
+        private String accessLogFile = "";
+        private Integer accessLogBufferSize = 8192;
+        private String authToken = "";
+        private String corsAllowedOrigin = "*";
 
         public Builder port(Integer port) {
             this.port = port;
@@ -68,6 +371,131 @@ public class Configuration {
             return this;
         }
 
+        public Builder engine(ServerEngine engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        public Builder eventLoops(Integer eventLoops) {
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        public Builder executorType(ExecutorType executorType) {
+            this.executorType = executorType;
+            return this;
+        }
+
+        public Builder workerThreads(Integer workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        public Builder maxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder maxHeaderCount(Integer maxHeaderCount) {
+            this.maxHeaderCount = maxHeaderCount;
+            return this;
+        }
+
+        public Builder maxHeaderSize(Integer maxHeaderSize) {
+            this.maxHeaderSize = maxHeaderSize;
+            return this;
+        }
+
+        public Builder maxBodySize(Integer maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        public Builder parallelPipelining(Boolean parallelPipelining) {
+            this.parallelPipelining = parallelPipelining;
+            return this;
+        }
+
+        public Builder fileCacheMaxBytes(Integer fileCacheMaxBytes) {
+            this.fileCacheMaxBytes = fileCacheMaxBytes;
+            return this;
+        }
+
+        public Builder fileCacheMaxFileSize(Integer fileCacheMaxFileSize) {
+            this.fileCacheMaxFileSize = fileCacheMaxFileSize;
+            return this;
+        }
+
+        public Builder compressionMinSize(Integer compressionMinSize) {
+            this.compressionMinSize = compressionMinSize;
+            return this;
+        }
+
+        public Builder compressionCacheMaxBytes(Integer compressionCacheMaxBytes) {
+            this.compressionCacheMaxBytes = compressionCacheMaxBytes;
+            return this;
+        }
+
+        public Builder maxStreamedBodySize(Long maxStreamedBodySize) {
+            this.maxStreamedBodySize = maxStreamedBodySize;
+            return this;
+        }
+
+        public Builder directBufferPoolMaxBytes(Integer directBufferPoolMaxBytes) {
+            this.directBufferPoolMaxBytes = directBufferPoolMaxBytes;
+            return this;
+        }
+
+        public Builder maxRequestsPerConnection(Integer maxRequestsPerConnection) {
+            this.maxRequestsPerConnection = maxRequestsPerConnection;
+            return this;
+        }
+
+        public Builder idleTimeout(Integer idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public Builder headerTimeout(Integer headerTimeout) {
+            this.headerTimeout = headerTimeout;
+            return this;
+        }
+
+        public Builder drainTimeout(Integer drainTimeout) {
+            this.drainTimeout = drainTimeout;
+            return this;
+        }
+
+        public Builder acceptors(Integer acceptors) {
+            this.acceptors = acceptors;
+            return this;
+        }
+
+        public Builder backlog(Integer backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder accessLogFile(String accessLogFile) {
+            this.accessLogFile = accessLogFile;
+            return this;
+        }
+
+        public Builder accessLogBufferSize(Integer accessLogBufferSize) {
+            this.accessLogBufferSize = accessLogBufferSize;
+            return this;
+        }
+
+        public Builder authToken(String authToken) {
+            this.authToken = authToken;
+            return this;
+        }
+
+        public Builder corsAllowedOrigin(String corsAllowedOrigin) {
+            this.corsAllowedOrigin = corsAllowedOrigin;
+            return this;
+        }
+
         public Configuration build() {
             return new Configuration(this);
         }
@@ -114,6 +542,14 @@ public class Configuration {
                     config.setDirectory(value);
                     logger.info("Directory set to {}", value);
                     break;
+                case ENGINE:
+                    try {
+                        config.setEngine(ServerEngine.fromString(value));
+                        logger.info("Engine set to {}", value);
+                    } catch (IllegalArgumentException e) {
+                        logger.error("Invalid engine: {}", value);
+                    }
+                    break;
                 default:
                     break;
             }
@@ -126,7 +562,8 @@ public class Configuration {
 
     private enum ServerConfigurationCommand {
         PORT("--port"),
-        DIRECTORY("--directory");
+        DIRECTORY("--directory"),
+        ENGINE("--engine");
 
         private final String command;
 
@@ -150,6 +587,22 @@ public class Configuration {
 
     @Override
     public String toString() {
-        return "Configuration [port=" + port + ", directory=" + directory + "]";
+        return "Configuration [port=" + port + ", directory=" + directory + ", engine=" + engine
+                + ", eventLoops=" + eventLoops + ", executorType=" + executorType
+                + ", workerThreads=" + workerThreads + ", maxConnections=" + maxConnections
+                + ", maxHeaderCount=" + maxHeaderCount + ", maxHeaderSize=" + maxHeaderSize
+                + ", maxBodySize=" + maxBodySize + ", parallelPipelining=" + parallelPipelining
+                + ", fileCacheMaxBytes=" + fileCacheMaxBytes
+                + ", fileCacheMaxFileSize=" + fileCacheMaxFileSize
+                + ", compressionMinSize=" + compressionMinSize
+                + ", compressionCacheMaxBytes=" + compressionCacheMaxBytes
+                + ", maxStreamedBodySize=" + maxStreamedBodySize
+                + ", directBufferPoolMaxBytes=" + directBufferPoolMaxBytes
+                + ", maxRequestsPerConnection=" + maxRequestsPerConnection + ", idleTimeout=" + idleTimeout
+                + ", headerTimeout=" + headerTimeout + ", drainTimeout=" + drainTimeout
+                + ", acceptors=" + acceptors + ", backlog=" + backlog + ", accessLogFile=" + accessLogFile
+                + ", accessLogBufferSize=" + accessLogBufferSize
+                + ", authToken=" + (authToken == null || authToken.isEmpty() ? "" : "***")
+                + ", corsAllowedOrigin=" + corsAllowedOrigin + "]";
     }
 }
@@ -0,0 +1,112 @@
+package domain.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Part of a file sent as a response body. The file is opened when the region
+ * is created, so its size is fixed even if the file changes afterwards, and
+ * the bytes go from the page cache to the socket with transferTo without
+ * passing through the heap.
+ */
+public class FileRegion implements Closeable {
+    private final Path path;
+    private final FileChannel channel;
+    private final long start;
+    private final long count;
+    private long position;
+    private byte[] preamble;
+    private byte[] epilogue;
+
+    private FileRegion(Path path, FileChannel channel, long start, long count) {
+        this.path = path;
+        this.channel = channel;
+        this.start = start;
+        this.count = count;
+        this.position = start;
+    }
+
+    public static FileRegion open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new FileRegion(path, channel, 0, channel.size());
+    }
+
+    public static FileRegion open(Path path, long start, long count) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (start < 0 || count < 0 || start + count > channel.size()) {
+            channel.close();
+            throw new IllegalArgumentException("Region " + start + "+" + count + " outside of " + path);
+        }
+        return new FileRegion(path, channel, start, count);
+    }
+
+    // Bytes sent around the region, such as the part headers of a multipart body
+    public FileRegion framed(byte[] preamble, byte[] epilogue) {
+        this.preamble = preamble;
+        this.epilogue = epilogue;
+        return this;
+    }
+
+    /**
+     * Sends as much of the remaining region as the target accepts and closes
+     * the file once everything has been sent. Returns the bytes written, which
+     * is 0 when a non-blocking target is full.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long end = start + count;
+        long written = channel.transferTo(position, end - position, target);
+        if (written == 0 && position >= channel.size()) {
+            throw new EOFException("File truncated while sending: " + path);
+        }
+
+        position += written;
+        if (position >= end) {
+            close();
+        }
+        return written;
+    }
+
+    public boolean hasRemaining() {
+        return position < start + count;
+    }
+
+    public byte[] getPreamble() {
+        return preamble;
+    }
+
+    public byte[] getEpilogue() {
+        return epilogue;
+    }
+
+    // Bytes on the wire for this region, framing included
+    public long getFramedLength() {
+        return count + (preamble != null ? preamble.length : 0) + (epilogue != null ? epilogue.length : 0);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "FileRegion [path=" + path + ", start=" + start + ", count=" + count + "]";
+    }
+}
@@ -0,0 +1,371 @@
+package domain.model;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import enums.HeaderName;
+
+/**
+ * Header fields in the order they were added, found case-insensitively through
+ * an open-addressed index. Names are hashed and compared char by char with
+ * ASCII case folding, so lookups make no lowercase copies, and well-known names
+ * are stored as their {@link HeaderName} constant. A name can appear more than
+ * once. Fields added from raw request bytes are only decoded when read, their
+ * values as UTF-8.
+ */
+public class HeaderMap {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final HeaderName[] KNOWN_NAMES = HeaderName.values();
+    private static final int[] KNOWN_HASHES = new int[KNOWN_NAMES.length];
+    // Open-addressed table of the well-known names, holding ordinal + 1
+    private static final int[] KNOWN_SLOTS = new int[Integer.highestOneBit(KNOWN_NAMES.length) * 4];
+
+    static {
+        for (HeaderName name : KNOWN_NAMES) {
+            int hash = hash(name.getValue());
+            KNOWN_HASHES[name.ordinal()] = hash;
+            int slot = hash & (KNOWN_SLOTS.length - 1);
+            while (KNOWN_SLOTS[slot] != 0) {
+                slot = (slot + 1) & (KNOWN_SLOTS.length - 1);
+            }
+            KNOWN_SLOTS[slot] = name.ordinal() + 1;
+        }
+    }
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    // HeaderName ordinal, -1 for any other name
+    private int[] tokens = new int[INITIAL_CAPACITY];
+    // Next field with the same name, -1 for the last one
+    private int[] next = new int[INITIAL_CAPACITY];
+    // Name and value bounds into source for raw fields, -1 once decoded or for added ones
+    private int[] offsets = new int[INITIAL_CAPACITY * 4];
+    // First field of each name, as index + 1 so that 0 is an empty slot
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private byte[] source;
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Appends a field, after any others with the same name
+    public void add(String name, String value) {
+        int hash = hash(name);
+        int token = knownToken(name, hash);
+        int index = append(hash, token);
+        names[index] = token >= 0 ? KNOWN_NAMES[token].getValue() : name;
+        values[index] = value;
+        link(index);
+    }
+
+    /**
+     * Appends a field whose name and value are still bytes of {@code source},
+     * in ISO-8859-1. All raw fields of a map share the same source.
+     */
+    public void addRaw(byte[] source, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        this.source = source;
+        int hash = hash(source, nameStart, nameEnd);
+        int token = knownToken(source, nameStart, nameEnd, hash);
+        int index = append(hash, token);
+        if (token >= 0) {
+            names[index] = KNOWN_NAMES[token].getValue();
+        } else {
+            offsets[index * 4] = nameStart;
+            offsets[index * 4 + 1] = nameEnd;
+        }
+        offsets[index * 4 + 2] = valueStart;
+        offsets[index * 4 + 3] = valueEnd;
+        link(index);
+    }
+
+    // Replaces every field with the name by a single one, in place of the first
+    public void set(String name, String value) {
+        int index = find(name);
+        if (index < 0 || next[index] >= 0) {
+            remove(name);
+            add(name, value);
+            return;
+        }
+        values[index] = value;
+        offsets[index * 4 + 2] = -1;
+    }
+
+    // Value of the first field with the name, or null
+    public String get(String name) {
+        int index = find(name);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    public String get(HeaderName name) {
+        return get(name.getValue());
+    }
+
+    public List<String> getAll(String name) {
+        List<String> all = new ArrayList<>();
+        for (int index = find(name); index >= 0; index = next[index]) {
+            all.add(valueAt(index));
+        }
+        return all;
+    }
+
+    public boolean contains(String name) {
+        return find(name) >= 0;
+    }
+
+    // Whether any field with the name has the value, ignoring case
+    public boolean contains(String name, String value) {
+        for (int index = find(name); index >= 0; index = next[index]) {
+            if (value.equalsIgnoreCase(valueAt(index))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Removes every field with the name, returns how many there were
+    public int remove(String name) {
+        int first = find(name);
+        if (first < 0) {
+            return 0;
+        }
+
+        // Compared against locals, compaction overwrites the first field with the ones it keeps
+        int hash = hashes[first];
+        int token = tokens[first];
+        int kept = first;
+        for (int index = first; index < size; index++) {
+            if (hashes[index] == hash && (token >= 0 ? tokens[index] == token
+                    : tokens[index] < 0 && nameEquals(index, name))) {
+                continue;
+            }
+            names[kept] = names[index];
+            values[kept] = values[index];
+            hashes[kept] = hashes[index];
+            tokens[kept] = tokens[index];
+            System.arraycopy(offsets, index * 4, offsets, kept * 4, 4);
+            kept++;
+        }
+        int removed = size - kept;
+        Arrays.fill(names, kept, size, null);
+        Arrays.fill(values, kept, size, null);
+        size = kept;
+        reindex();
+        return removed;
+    }
+
+    public String nameAt(int index) {
+        if (names[index] == null) {
+            names[index] = decode(offsets[index * 4], offsets[index * 4 + 1], StandardCharsets.ISO_8859_1);
+            offsets[index * 4] = -1;
+        }
+        return names[index];
+    }
+
+    public String valueAt(int index) {
+        if (offsets[index * 4 + 2] >= 0) {
+            values[index] = decode(offsets[index * 4 + 2], offsets[index * 4 + 3], StandardCharsets.UTF_8);
+            offsets[index * 4 + 2] = -1;
+        }
+        return values[index];
+    }
+
+    // The well-known name of the field, or null for any other name
+    public HeaderName knownNameAt(int index) {
+        return tokens[index] >= 0 ? KNOWN_NAMES[tokens[index]] : null;
+    }
+
+    /**
+     * Points the raw fields at a copy of their source that starts at
+     * {@code start} of the old one.
+     */
+    public void relocate(byte[] source, int start) {
+        for (int index = 0; index < size; index++) {
+            for (int i = index * 4; i < index * 4 + 4; i += 2) {
+                if (offsets[i] >= 0) {
+                    offsets[i] -= start;
+                    offsets[i + 1] -= start;
+                }
+            }
+        }
+        this.source = source;
+    }
+
+    // Empties the map, keeping its arrays
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+        source = null;
+    }
+
+    private int append(int hash, int token) {
+        if (size == names.length) {
+            grow();
+        }
+        int index = size++;
+        hashes[index] = hash;
+        tokens[index] = token;
+        next[index] = -1;
+        offsets[index * 4] = -1;
+        offsets[index * 4 + 2] = -1;
+        return index;
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        values = Arrays.copyOf(values, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        tokens = Arrays.copyOf(tokens, capacity);
+        next = Arrays.copyOf(next, capacity);
+        offsets = Arrays.copyOf(offsets, capacity * 4);
+        slots = new int[capacity * 2];
+        reindex();
+    }
+
+    private void reindex() {
+        Arrays.fill(slots, 0);
+        for (int index = 0; index < size; index++) {
+            next[index] = -1;
+            link(index);
+        }
+    }
+
+    // Puts the field in the index, or at the end of the fields with its name
+    private void link(int index) {
+        int mask = slots.length - 1;
+        for (int slot = hashes[index] & mask;; slot = (slot + 1) & mask) {
+            int first = slots[slot] - 1;
+            if (first < 0) {
+                slots[slot] = index + 1;
+                return;
+            }
+            if (hashes[first] == hashes[index] && sameName(first, index)) {
+                int last = first;
+                while (next[last] >= 0) {
+                    last = next[last];
+                }
+                next[last] = index;
+                return;
+            }
+        }
+    }
+
+    private int find(String name) {
+        int hash = hash(name);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (hashes[index] == hash && nameEquals(index, name)) {
+                return index;
+            }
+        }
+    }
+
+    private boolean nameEquals(int index, String name) {
+        if (names[index] != null) {
+            return names[index] == name || names[index].equalsIgnoreCase(name);
+        }
+        int start = offsets[index * 4];
+        if (offsets[index * 4 + 1] - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (fold(source[start + i] & 0xff) != fold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameName(int index, int other) {
+        if (tokens[index] >= 0 || tokens[other] >= 0) {
+            return tokens[index] == tokens[other];
+        }
+        return nameEquals(index, nameAt(other));
+    }
+
+    // Names are tokens and decoded byte for byte, values as UTF-8 like the rest of the request
+    private String decode(int start, int end, Charset charset) {
+        return new String(source, start, end - start, charset);
+    }
+
+    private static int knownToken(String name, int hash) {
+        int mask = KNOWN_SLOTS.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int token = KNOWN_SLOTS[slot] - 1;
+            if (token < 0 || KNOWN_HASHES[token] == hash && KNOWN_NAMES[token].getValue().equalsIgnoreCase(name)) {
+                return token;
+            }
+        }
+    }
+
+    private static int knownToken(byte[] source, int start, int end, int hash) {
+        int mask = KNOWN_SLOTS.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int token = KNOWN_SLOTS[slot] - 1;
+            if (token < 0 || KNOWN_HASHES[token] == hash && bytesEqual(KNOWN_NAMES[token].getValue(), source, start, end)) {
+                return token;
+            }
+        }
+    }
+
+    private static boolean bytesEqual(String name, byte[] source, int start, int end) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (fold(source[start + i] & 0xff) != fold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Names are ISO-8859-1, so a char and the byte it was decoded from hash the same
+    private static int hash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + fold(name.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(byte[] source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(source[i] & 0xff);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int fold(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int index = 0; index < size; index++) {
+            if (index > 0) {
+                sb.append(", ");
+            }
+            sb.append(nameAt(index)).append('=').append(valueAt(index));
+        }
+        return sb.append('}').toString();
+    }
+}
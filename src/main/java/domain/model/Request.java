@@ -1,7 +1,11 @@
 package domain.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import enums.RequestMethod;
 
@@ -9,11 +13,86 @@ public class Request {
     private RequestMethod method;
     private String path;
     private String version;
-    private Map<String, String> headers; 
+    // Filled from the raw bytes by wrap(), emptied and reused by clear()
+    private HeaderMap headers = new HeaderMap();
     private String body;
+    private String[] pathParameterNames;
+    private int[] pathParameterBounds;
+
+    // Raw bytes the parser left the request in. Fields are only decoded from
+    // them when read, and stay valid until the connection reuses its buffer.
+    private byte[] source;
+    private int pathStart;
+    private int pathEnd;
+    private int bodyStart;
+    private int bodyLength;
+    // Body still arriving on the connection, for requests whose body is not buffered
+    private InputStream bodyStream;
+    // Cleared by the connection when it closes after this request
+    private boolean keepAlive = true;
+    // System.nanoTime() when the parser found the request, 0 for requests built otherwise
+    private long receivedAt;
 
     public Request() {
-        this.headers = new HashMap<>();
+    }
+
+    public Request(byte[] source, int base, RequestMethod method, String version, int pathStart, int pathEnd,
+            int[] headerOffsets, int headerCount, int bodyStart, int bodyLength) {
+        wrap(source, base, method, version, pathStart, pathEnd, headerOffsets, headerCount, bodyStart, bodyLength);
+    }
+
+    /**
+     * Points the request at one the parser found in {@code source}, replacing
+     * anything it held before. Offsets are relative to {@code base} and are
+     * read into the header map, so the parser can keep reusing its array.
+     */
+    public void wrap(byte[] source, int base, RequestMethod method, String version, int pathStart, int pathEnd,
+            int[] headerOffsets, int headerCount, int bodyStart, int bodyLength) {
+        clear();
+        this.source = source;
+        this.method = method;
+        this.version = version;
+        this.pathStart = base + pathStart;
+        this.pathEnd = base + pathEnd;
+        for (int i = 0; i < headerCount; i++) {
+            int offset = i * 4;
+            headers.addRaw(source, base + headerOffsets[offset], base + headerOffsets[offset + 1],
+                    base + headerOffsets[offset + 2], base + headerOffsets[offset + 3]);
+        }
+        this.bodyStart = base + bodyStart;
+        this.bodyLength = bodyLength;
+        this.receivedAt = System.nanoTime();
+    }
+
+    // Drops everything but the arrays worth reusing, once the request has been answered
+    public void clear() {
+        method = null;
+        path = null;
+        version = null;
+        headers.clear();
+        body = null;
+        pathParameterNames = null;
+        pathParameterBounds = null;
+        source = null;
+        bodyLength = 0;
+        bodyStream = null;
+        keepAlive = true;
+        receivedAt = 0;
+    }
+
+    // Copies the raw bytes out of the connection buffer, for requests used after the buffer is reused
+    public void detach() {
+        if (source == null) {
+            return;
+        }
+
+        // The head and body are contiguous, from the path to the end of the body
+        int start = pathStart;
+        source = Arrays.copyOfRange(source, start, bodyStart + bodyLength);
+        headers.relocate(source, start);
+        pathStart -= start;
+        pathEnd -= start;
+        bodyStart -= start;
     }
 
     public RequestMethod getMethod() {
@@ -25,11 +104,58 @@ public class Request {
     }
 
     public String getPath() {
+        if (path == null && source != null) {
+            path = new String(source, pathStart, pathEnd - pathStart, StandardCharsets.UTF_8);
+        }
         return path;
     }
 
     public void setPath(String path) {
         this.path = path;
+        // The source no longer holds this path
+        this.pathEnd = pathStart;
+    }
+
+    /**
+     * Copies up to {@code max} UTF-8 bytes of the path into {@code target},
+     * straight from the request bytes when it was parsed, and returns how many
+     * were copied.
+     */
+    public int copyPath(byte[] target, int offset, int max) {
+        if (source != null && pathEnd > pathStart) {
+            int length = Math.min(pathEnd - pathStart, max);
+            System.arraycopy(source, pathStart, target, offset, length);
+            return length;
+        }
+        if (path == null) {
+            return 0;
+        }
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, max);
+        System.arraycopy(bytes, 0, target, offset, length);
+        return length;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    // Names come from the matched route, bounds are [start, end) pairs into the path
+    public void setPathParameters(String[] names, int[] bounds) {
+        this.pathParameterNames = names;
+        this.pathParameterBounds = bounds;
+    }
+
+    public String getPathParam(String name) {
+        if (pathParameterNames == null) {
+            return null;
+        }
+        for (int i = 0; i < pathParameterNames.length; i++) {
+            if (pathParameterNames[i].equals(name)) {
+                return getPath().substring(pathParameterBounds[i * 2], pathParameterBounds[i * 2 + 1]);
+            }
+        }
+        return null;
     }
 
     public String getVersion() {
@@ -40,20 +166,117 @@ public class Request {
         this.version = version;
     }
 
-    public Map<String, String> getHeaders() {
+    public HeaderMap getHeaders() {
         return headers;
     }
 
-    public void setHeaders(Map<String, String> headers) {
+    public void setHeaders(HeaderMap headers) {
         this.headers = headers;
     }
 
+    // Case-insensitive, only the value found is decoded from the raw bytes
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
     public String getBody() {
+        if (bodyStream != null) {
+            readStreamedBody();
+        }
+        if (body == null && source != null && bodyLength > 0) {
+            body = new String(source, bodyStart, bodyLength, StandardCharsets.UTF_8);
+        }
         return body;
     }
 
     public void setBody(String body) {
         this.body = body;
+        this.bodyLength = 0;
+        this.bodyStream = null;
+    }
+
+    // Raw bytes are preferred over the decoded String, which is lossy for binary bodies
+    public byte[] getBodyBytes() {
+        if (bodyStream != null) {
+            return readStreamedBody();
+        }
+        if (source != null && bodyLength > 0) {
+            return Arrays.copyOfRange(source, bodyStart, bodyStart + bodyLength);
+        }
+        if (body != null) {
+            return body.getBytes(StandardCharsets.UTF_8);
+        }
+        return new byte[0];
+    }
+
+    /**
+     * The body as a stream, read lazily from the connection when it was too
+     * large to buffer. A streamed body can only be read once, by the handler
+     * that received the request.
+     */
+    public InputStream getBodyStream() {
+        if (bodyStream != null) {
+            return bodyStream;
+        }
+        if (source != null && bodyLength > 0) {
+            return new ByteArrayInputStream(source, bodyStart, bodyLength);
+        }
+        return new ByteArrayInputStream(getBodyBytes());
+    }
+
+    public void setBodyStream(InputStream bodyStream) {
+        this.bodyStream = bodyStream;
+    }
+
+    public boolean hasStreamedBody() {
+        return bodyStream != null;
+    }
+
+    // Reads the rest of a streamed body into memory and keeps it after the head, like a buffered one
+    private byte[] readStreamedBody() {
+        try (InputStream stream = bodyStream) {
+            byte[] bytes = stream.readAllBytes();
+            bodyStream = null;
+            if (source != null) {
+                source = Arrays.copyOf(source, bodyStart + bytes.length);
+                System.arraycopy(bytes, 0, source, bodyStart, bytes.length);
+                bodyLength = bytes.length;
+            } else {
+                body = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean hasBody() {
+        return bodyStream != null || bodyLength > 0 || (body != null && !body.isEmpty());
+    }
+
+    // Whether the connection stays open after this request, as both the client and the connection want
+    public boolean isKeepAlive() {
+        if (!keepAlive) {
+            return false;
+        }
+        String connection = getHeader("Connection");
+        if (connection == null) {
+            connection = "";
+        }
+        if ("HTTP/1.0".equalsIgnoreCase(version)) {
+            return connection.equalsIgnoreCase("keep-alive");
+        }
+
+        return !connection.equalsIgnoreCase("close");
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    // The client waits for 100 Continue before sending the body
+    public boolean isContinueExpected() {
+        return "HTTP/1.1".equals(version) && "100-continue".equalsIgnoreCase(getHeader("Expect"));
     }
 
     @Override
@@ -61,10 +284,10 @@ public class Request {
         StringBuilder sb = new StringBuilder();
         sb.append("Request[");
         sb.append("method=").append(method);
-        sb.append(", path=").append(path);
+        sb.append(", path=").append(getPath());
         sb.append(", version=").append(version);
-        sb.append(", headers=").append(headers);
-        sb.append(", body=").append(body);
+        sb.append(", headers=").append(getHeaders());
+        sb.append(", body=").append(bodyStream != null ? "<streamed>" : getBody());
         sb.append("]");
         return sb.toString();
     }
@@ -1,22 +1,103 @@
 package domain.model;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
-
-import enums.HttpEncoding;
 
 public class Response {
+    // Recycled responses of the current thread, reused by the builders that run on it
+    private static final ThreadLocal<ArrayDeque<Response>> pool = new ThreadLocal<>();
+    private static final int MAX_POOLED = 32;
+
     private String version = "HTTP/1.1";
     private int statusCode = 200;
     private String statusMessage = "OK";
     private String body = "";
     private byte[] byteBody = null;
-    private final List<Header> headers = new ArrayList<>();
+    private List<FileRegion> fileBody = null;
+    private StreamingBody streamingBody = null;
+    private boolean chunked = true;
+    private final HeaderMap headers = new HeaderMap();
+    // Kept and returned again by whoever built it, only ever sent as a copy
+    private boolean shared = false;
+    // Set once the content coding was negotiated, so the router does not compress it again
+    private boolean encodingNegotiated = false;
+
+    /**
+     * A response recycled on this thread, or a new one. The builder takes its
+     * responses from here.
+     */
+    public static Response obtain() {
+        ArrayDeque<Response> recycled = pool.get();
+        Response response = recycled != null ? recycled.poll() : null;
+        return response != null ? response : new Response();
+    }
+
+    /**
+     * Clears the response and keeps it for the next {@link #obtain()} on this
+     * thread. Called by the server once the response is queued for writing,
+     * nothing may use it afterwards.
+     */
+    public void recycle() {
+        if (shared) {
+            return;
+        }
+        version = "HTTP/1.1";
+        statusCode = 200;
+        statusMessage = "OK";
+        body = "";
+        byteBody = null;
+        if (fileBody != null) {
+            fileBody.clear();
+        }
+        streamingBody = null;
+        chunked = true;
+        encodingNegotiated = false;
+        headers.clear();
+
+        ArrayDeque<Response> recycled = pool.get();
+        if (recycled == null) {
+            recycled = new ArrayDeque<>();
+            pool.set(recycled);
+        }
+        if (recycled.size() < MAX_POOLED) {
+            recycled.push(this);
+        }
+    }
+
+    /**
+     * Marks the response as one that is kept and returned for many requests,
+     * like the cached answer of a filter that short-circuits. The router
+     * sends a {@link #copy()} of it, so it is never changed or recycled.
+     */
+    public Response share() {
+        shared = true;
+        return this;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    // A recycled response with the same head and body, the body itself is not copied
+    public Response copy() {
+        Response copy = obtain();
+        copy.version = version;
+        copy.statusCode = statusCode;
+        copy.statusMessage = statusMessage;
+        copy.body = body;
+        copy.byteBody = byteBody;
+        if (fileBody != null) {
+            copy.getFileBody().addAll(fileBody);
+        }
+        copy.streamingBody = streamingBody;
+        copy.chunked = chunked;
+        copy.encodingNegotiated = encodingNegotiated;
+        for (int index = 0; index < headers.size(); index++) {
+            copy.headers.add(headers.nameAt(index), headers.valueAt(index));
+        }
+        return copy;
+    }
 
     public String getVersion() {
         return version;
@@ -50,10 +131,18 @@ public class Response {
         this.body = body;
     }
 
-    public List<Header> getHeaders() {
+    public HeaderMap getHeaders() {
         return headers;
     }
 
+    public void addHeader(String key, String value) {
+        headers.add(key, value);
+    }
+
+    public boolean hasHeader(String key) {
+        return headers.contains(key);
+    }
+
     public byte[] getByteBody() {
         return byteBody;
     }
@@ -62,126 +151,126 @@ public class Response {
         this.byteBody = byteBody;
     }
 
-    @Override
-    public String toString() {
-        return "Response [version=" + version + ", statusCode=" + statusCode + ", statusMessage=" + statusMessage
-                + ", body=" + body + ", headers=" + headers + "]";
+    // File regions sent in order after the head, more than one for multipart bodies
+    public List<FileRegion> getFileBody() {
+        if (fileBody == null) {
+            fileBody = new ArrayList<>();
+        }
+        return fileBody;
     }
 
-    public byte[] getByteResponse() {
-        return getRawResponse().getBytes(StandardCharsets.UTF_8);
+    public boolean hasFileBody() {
+        return fileBody != null && !fileBody.isEmpty();
     }
 
-    public String getRawResponse() {
-        StringBuilder rawResponse = new StringBuilder();
-        rawResponse.append(version).append(" ").append(statusCode).append(" ").append(statusMessage).append("\r\n");
+    // Body produced after the head is sent, with chunked framing unless the connection is closed after it
+    public StreamingBody getStreamingBody() {
+        return streamingBody;
+    }
 
-        if (headers != null && !headers.isEmpty()) {
-            for (Header header : headers) {
-                rawResponse.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
-            }
-        }
+    public void setStreamingBody(StreamingBody streamingBody) {
+        this.streamingBody = streamingBody;
+    }
 
-        // If headers does not contain Content-Length, add it
-        boolean hasContentLength = headers.stream().anyMatch(h -> h.getKey().equalsIgnoreCase("Content-Length"));
-        boolean hasBody = body != null && !body.isEmpty();
-        boolean hasByteBody = byteBody != null && byteBody.length > 0;
-        if (!hasContentLength) {
-            rawResponse.append("Content-Length: ").append(hasBody ? body.length() : 0).append("\r\n");
-        }
+    public boolean hasStreamingBody() {
+        return streamingBody != null;
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    public void setChunked(boolean chunked) {
+        this.chunked = chunked;
+    }
 
-        rawResponse.append("\r\n");
-        if (hasBody && !hasByteBody) {
-            rawResponse.append(body);
+    public boolean isEncodingNegotiated() {
+        return encodingNegotiated;
+    }
+
+    public void setEncodingNegotiated(boolean encodingNegotiated) {
+        this.encodingNegotiated = encodingNegotiated;
+    }
+
+    public long getFileBodyLength() {
+        long length = 0;
+        for (FileRegion region : getFileBody()) {
+            length += region.getFramedLength();
         }
+        return length;
+    }
 
-        return rawResponse.toString();
+    @Override
+    public String toString() {
+        return "Response [version=" + version + ", statusCode=" + statusCode + ", statusMessage=" + statusMessage
+                + ", body=" + (hasFileBody() ? fileBody : hasStreamingBody() ? "<streaming>" : body) + ", headers=" + headers + "]";
     }
 
+    // Builds straight into a recycled response, a builder is good for one build() only
     public static class Builder {
-        private String version = "HTTP/1.1";
-        private int statusCode;
-        private String statusMessage;
-        private String body = "";
-        private byte[] byteBody = null;
-        private final List<Header> headers = new ArrayList<>();
+        private final Response response = Response.obtain();
 
         public Builder version(String version) {
-            this.version = version;
+            response.setVersion(version);
             return this;
         }
 
         public Builder statusCode(int statusCode) {
-            this.statusCode = statusCode;
+            response.setStatusCode(statusCode);
             return this;
         }
 
         public Builder statusMessage(String statusMessage) {
-            this.statusMessage = statusMessage;
+            response.setStatusMessage(statusMessage);
             return this;
         }
 
         public Builder body(String body) {
-            this.body = body;
+            response.setBody(body);
             return this;
         }
 
         public Builder contentType(String contentType) {
-            this.headers.add(new Header("Content-Type", contentType));
+            response.addHeader("Content-Type", contentType);
             return this;
         }
 
         public Builder contentLength(String contentLength) {
-            this.headers.add(new Header("Content-Length", contentLength));
+            response.addHeader("Content-Length", contentLength);
             return this;
         }
 
         public Builder addHeader(String key, String value) {
-            this.headers.add(new Header(key, value));
+            response.addHeader(key, value);
             return this;
         }
 
         public Builder byteBody(byte[] byteBody) {
-            this.byteBody = byteBody;
+            response.setByteBody(byteBody);
+            return this;
+        }
+
+        // Content-Length is taken from the regions unless set explicitly
+        public Builder fileBody(FileRegion region) {
+            response.getFileBody().add(region);
+            return this;
+        }
+
+        public Builder streamingBody(StreamingBody streamingBody) {
+            response.setStreamingBody(streamingBody);
             return this;
         }
 
         public Response build() {
-            Response response = new Response();
-            response.setVersion(this.version);
-            response.setStatusCode(this.statusCode);
-            response.setStatusMessage(this.statusMessage);
-            response.setBody(this.body);
-            response.getHeaders().addAll(this.headers);
-            response.setByteBody(this.byteBody);
             return response;
         }
     }
 
-    public boolean encodeBody(HttpEncoding encoding, OutputStream output) throws IOException {
-
-        switch (encoding) {
-            case GZIP:
-                // Remove Content-Length if exists already
-                headers.removeIf(h -> h.getKey().equalsIgnoreCase("Content-Length"));
-
-                // Recover body and compress it
-                byte[] originalBody = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
-                ByteArrayOutputStream compressedBodyStream = new ByteArrayOutputStream();
-                try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressedBodyStream)) {
-                    gzipOutputStream.write(originalBody);
-                }
-
-                byte[] compressedBody = compressedBodyStream.toByteArray();
-                String bodyLength = String.valueOf(compressedBody.length);
-
-                headers.add(new Header("Content-Encoding", "gzip"));
-                headers.add(new Header("Content-Length", bodyLength));
-
-                this.byteBody = compressedBody;
-                return true;
-            default:
-                return false;
-        }
+    // Replaces the body with its encoded form and updates the entity headers to match
+    public void encodeBody(String contentCoding, byte[] encodedBody) {
+        headers.remove("Content-Length");
+        addHeader("Content-Encoding", contentCoding);
+        addHeader("Content-Length", String.valueOf(encodedBody.length));
+        this.byteBody = encodedBody;
     }
 }
@@ -0,0 +1,18 @@
+package domain.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response body produced while it is being sent, for output that is too large
+ * or open-ended to buffer. The stream blocks while the client is behind, so
+ * the producer never gets more than a few chunks ahead of the socket. Calling
+ * flush sends what has been written so far as a chunk.
+ *
+ * <p>The producer runs after the handler has returned, so it must not read the
+ * Request unless the Router detached it, which it does for streaming responses.
+ */
+@FunctionalInterface
+public interface StreamingBody {
+    void writeTo(OutputStream output) throws IOException;
+}
@@ -0,0 +1,25 @@
+package enums;
+
+public enum ExecutorType {
+    VIRTUAL("virtual"),
+    PLATFORM("platform");
+
+    private final String value;
+
+    ExecutorType(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ExecutorType fromString(String type) {
+        for (ExecutorType e : values()) {
+            if (e.value.equalsIgnoreCase(type)) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("No enum constant for executor type: " + type);
+    }
+}
@@ -0,0 +1,48 @@
+package enums;
+
+// Well-known header names, matched case-insensitively and always written in this spelling
+public enum HeaderName {
+    ACCEPT("Accept"),
+    ACCEPT_ENCODING("Accept-Encoding"),
+    ACCEPT_LANGUAGE("Accept-Language"),
+    ACCEPT_RANGES("Accept-Ranges"),
+    ALLOW("Allow"),
+    AUTHORIZATION("Authorization"),
+    CACHE_CONTROL("Cache-Control"),
+    CONNECTION("Connection"),
+    CONTENT_ENCODING("Content-Encoding"),
+    CONTENT_LENGTH("Content-Length"),
+    CONTENT_RANGE("Content-Range"),
+    CONTENT_TYPE("Content-Type"),
+    COOKIE("Cookie"),
+    DATE("Date"),
+    ETAG("ETag"),
+    EXPECT("Expect"),
+    HOST("Host"),
+    IF_MATCH("If-Match"),
+    IF_MODIFIED_SINCE("If-Modified-Since"),
+    IF_NONE_MATCH("If-None-Match"),
+    IF_RANGE("If-Range"),
+    KEEP_ALIVE("Keep-Alive"),
+    LAST_MODIFIED("Last-Modified"),
+    LOCATION("Location"),
+    ORIGIN("Origin"),
+    RANGE("Range"),
+    REFERER("Referer"),
+    SERVER("Server"),
+    SET_COOKIE("Set-Cookie"),
+    TRANSFER_ENCODING("Transfer-Encoding"),
+    UPGRADE("Upgrade"),
+    USER_AGENT("User-Agent"),
+    VARY("Vary");
+
+    private final String value;
+
+    HeaderName(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
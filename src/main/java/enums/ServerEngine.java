@@ -0,0 +1,25 @@
+package enums;
+
+public enum ServerEngine {
+    BLOCKING("blocking"),
+    NIO("nio");
+
+    private final String value;
+
+    ServerEngine(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ServerEngine fromString(String engine) {
+        for (ServerEngine e : values()) {
+            if (e.value.equalsIgnoreCase(engine)) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("No enum constant for server engine: " + engine);
+    }
+}
@@ -0,0 +1,64 @@
+package infrastructure.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import domain.model.Request;
+import domain.model.Response;
+
+/**
+ * Filter run around the handler of the routes that name it. It may answer
+ * the request itself instead of calling next, or change the response next
+ * returns. The chain of every route is composed once when the routes are
+ * registered. A response kept to answer many requests must be marked with
+ * {@link Response#share()}.
+ */
+@FunctionalInterface
+public interface Middleware {
+    Response handle(Request request, OutputStream output, RouteHandler next) throws IOException;
+
+    // Changes the response once the rest of the chain has produced it
+    @FunctionalInterface
+    interface After {
+        void apply(Request request, Response response) throws IOException;
+    }
+
+    /**
+     * Runs before the rest of the chain, a response returned by the filter
+     * answers the request instead. Responses are recycled once written, so a
+     * filter returning the same response every time has to mark it with
+     * {@link Response#share()}.
+     */
+    static Middleware before(RouteHandler filter) {
+        return (request, output, next) -> {
+            Response response = filter.handle(request, output);
+            return response != null ? response : next.handle(request, output);
+        };
+    }
+
+    static Middleware after(After filter) {
+        return (request, output, next) -> {
+            Response response = next.handle(request, output);
+            if (response != null) {
+                filter.apply(request, response);
+            }
+            return response;
+        };
+    }
+
+    // Nests the handler in the middlewares, the first one outermost. A shared response is
+    // copied as it leaves the middleware returning it, so the ones outside change the copy
+    static RouteHandler compose(RouteHandler handler, List<Middleware> middlewares) {
+        RouteHandler chain = handler;
+        for (int i = middlewares.size() - 1; i >= 0; i--) {
+            Middleware middleware = middlewares.get(i);
+            RouteHandler next = chain;
+            chain = (request, output) -> {
+                Response response = middleware.handle(request, output, next);
+                return response != null && response.isShared() ? response.copy() : response;
+            };
+        }
+        return chain;
+    }
+}
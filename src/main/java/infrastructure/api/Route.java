@@ -2,6 +2,9 @@ package infrastructure.api;
 
 import java.util.Arrays;
 
+import enums.RequestMethod;
+import infrastructure.metrics.Histogram;
+
 public class Route {
     private boolean seachByStartsWith = false;
     private String path;
@@ -10,6 +13,11 @@ public class Route {
     private String className;
     private String description;
     private String[] middlewares;
+    private RouteHandler routeHandler;
+    // Handler wrapped in the route's middlewares, composed when the routes are registered
+    private RouteHandler chain;
+    // Set when the routes are compiled, null for routes never registered
+    private Histogram latency;
 
     public Route() {
     }
@@ -26,6 +34,13 @@ public class Route {
         this.className = className;
     }
 
+    // Route bound to its handler up front, so it needs no handler or class name
+    public static Route of(RequestMethod method, String path, RouteHandler handler, String... middlewares) {
+        Route route = new Route(false, path, method.name(), null, null, middlewares, null);
+        route.setRouteHandler(handler);
+        return route;
+    }
+
     public static class Builder {
         private boolean seachByStartsWith = false;
         private String path;
@@ -99,6 +114,23 @@ public class Route {
         this.handler = handler;
     }
 
+    public RouteHandler getRouteHandler() {
+        return routeHandler;
+    }
+
+    public void setRouteHandler(RouteHandler routeHandler) {
+        this.routeHandler = routeHandler;
+    }
+
+    // The handler itself for routes without middlewares
+    public RouteHandler getChain() {
+        return chain != null ? chain : routeHandler;
+    }
+
+    public void setChain(RouteHandler chain) {
+        this.chain = chain;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -123,6 +155,14 @@ public class Route {
         this.className = className;
     }
 
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public void setLatency(Histogram latency) {
+        this.latency = latency;
+    }
+
     public boolean isSeachByStartsWith() {
         return seachByStartsWith;
     }
@@ -0,0 +1,17 @@
+package infrastructure.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import domain.model.Request;
+import domain.model.Response;
+
+/**
+ * Handler a route is linked to, either given directly through
+ * {@link Route#of} or bound from the handler name when the routes are
+ * registered.
+ */
+@FunctionalInterface
+public interface RouteHandler {
+    Response handle(Request request, OutputStream output) throws IOException;
+}
@@ -0,0 +1,352 @@
+package infrastructure.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Request;
+import enums.RequestMethod;
+
+/**
+ * Immutable segment trie compiled from the registered routes. Each node holds
+ * its static children sorted by label plus at most one {@code {param}} and one
+ * wildcard child, and the routes ending on it indexed by method, each with
+ * its own parameter names. A path is matched for the request's method first,
+ * so a static segment routed only for other methods falls back to a
+ * parameter or wildcard that routes this one.
+ *
+ * <p>Paths use {@code {name}} for a single segment and {@code {name*}} or
+ * {@code *} for the rest of the path. Routes built with
+ * {@code isSearchByStartsWith} match their path and everything below it.
+ * Lookups compare segments in place, so resolving a route without parameters
+ * allocates nothing.
+ */
+public class RouteTrie {
+    private static final Logger logger = LogManager.getLogger(RouteTrie.class);
+    private static final int METHOD_COUNT = RequestMethod.values().length;
+    private static final int ANY_METHOD = -1;
+    private static final String WILDCARD = "*";
+
+    private final Node root;
+    private final Route notFound;
+    private final Route methodNotAllowed;
+
+    private RouteTrie(Node root, Route notFound, Route methodNotAllowed) {
+        this.root = root;
+        this.notFound = notFound;
+        this.methodNotAllowed = methodNotAllowed;
+    }
+
+    public static RouteTrie compile(List<Route> routes, Route notFound, Route methodNotAllowed) {
+        NodeBuilder root = new NodeBuilder();
+        for (Route route : routes) {
+            List<String> segments = segmentsOf(route.getPath());
+            NodeBuilder node = root;
+            List<String> paramNames = new ArrayList<>();
+            List<Integer> paramSegments = new ArrayList<>();
+
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (isWildcard(segment)) {
+                    if (i != segments.size() - 1) {
+                        throw new IllegalArgumentException("Wildcard must be the last segment: " + route.getPath());
+                    }
+                    paramNames.add(wildcardName(segment));
+                    paramSegments.add(i);
+                    node = node.wildcardChild();
+                } else if (segment.startsWith("{") && segment.endsWith("}")) {
+                    paramNames.add(segment.substring(1, segment.length() - 1));
+                    paramSegments.add(i);
+                    node = node.paramChild();
+                } else {
+                    node = node.staticChild(segment);
+                }
+            }
+
+            node.addRoute(route, paramNames, paramSegments, false);
+            if (route.isSeachByStartsWith()) {
+                // A prefix route also owns everything below its path
+                node.wildcardChild().addRoute(route, paramNames, paramSegments, true);
+            }
+        }
+
+        return new RouteTrie(root.build(), notFound, methodNotAllowed);
+    }
+
+    /**
+     * Resolves the route for the request and stores any path parameters on it.
+     * Returns the not-found route if no path matches and the method-not-allowed
+     * route if the path matches under a different method.
+     */
+    public Route resolve(Request request) {
+        String path = request.getPath();
+        int end = pathEnd(path);
+        int method = request.getMethod().ordinal();
+        Node node = match(path, end, method);
+        if (node == null) {
+            return match(path, end, ANY_METHOD) != null ? methodNotAllowed : notFound;
+        }
+
+        Leaf leaf = node.leaves[method];
+        if (leaf.paramNames.length > 0) {
+            request.setPathParameters(leaf.paramNames, captureParameters(leaf, path, end));
+        }
+        return leaf.route;
+    }
+
+    // Value for the Allow header of a 405 response, null if the path has no routes
+    public String allowedMethods(String path) {
+        int end = pathEnd(path);
+        if (match(path, end, ANY_METHOD) == null) {
+            return null;
+        }
+
+        StringBuilder allow = new StringBuilder();
+        for (RequestMethod method : RequestMethod.values()) {
+            if (match(path, end, method.ordinal()) != null) {
+                if (allow.length() > 0) {
+                    allow.append(", ");
+                }
+                allow.append(method.name());
+            }
+        }
+        return allow.toString();
+    }
+
+    // Node with a route for the method, or for any method with ANY_METHOD
+    private Node match(String path, int end, int method) {
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        if (end == 1) {
+            return root.routes(method) ? root : null;
+        }
+        return match(root, path, 1, end, method);
+    }
+
+    // Static children win over parameters, which win over wildcards
+    private static Node match(Node node, String path, int start, int end, int method) {
+        if (start > end) {
+            return node.routes(method) ? node : null;
+        }
+
+        int segmentEnd = path.indexOf('/', start);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+
+        Node child = node.staticChild(path, start, segmentEnd);
+        if (child != null) {
+            Node found = match(child, path, segmentEnd + 1, end, method);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (node.param != null && segmentEnd > start) {
+            Node found = match(node.param, path, segmentEnd + 1, end, method);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        if (node.wildcard != null && node.wildcard.routes(method)) {
+            return node.wildcard;
+        }
+        return null;
+    }
+
+    // Second pass over the path, only taken when the matched route declares parameters
+    private static int[] captureParameters(Leaf leaf, String path, int end) {
+        int[] bounds = new int[leaf.paramNames.length * 2];
+        int segment = 0;
+        int param = 0;
+        int start = 1;
+
+        while (param < leaf.paramSegments.length && start <= end) {
+            int segmentEnd = path.indexOf('/', start);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+
+            if (leaf.paramSegments[param] == segment) {
+                boolean isLast = param == leaf.paramSegments.length - 1;
+                bounds[param * 2] = start;
+                bounds[param * 2 + 1] = isLast && leaf.endsWithWildcard ? end : segmentEnd;
+                param++;
+            }
+
+            segment++;
+            start = segmentEnd + 1;
+        }
+
+        // Segments missing from the path leave their parameters empty
+        for (; param < leaf.paramSegments.length; param++) {
+            bounds[param * 2] = end;
+            bounds[param * 2 + 1] = end;
+        }
+        return bounds;
+    }
+
+    private static int pathEnd(String path) {
+        int query = path.indexOf('?');
+        return query < 0 ? path.length() : query;
+    }
+
+    private static List<String> segmentsOf(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.equals(WILDCARD) || (segment.startsWith("{") && segment.endsWith("*}"));
+    }
+
+    private static String wildcardName(String segment) {
+        return segment.equals(WILDCARD) ? WILDCARD : segment.substring(1, segment.length() - 2);
+    }
+
+    // A route and where its parameters are in the path
+    private static final class Leaf {
+        private final Route route;
+        private final String[] paramNames;
+        private final int[] paramSegments;
+        private final boolean endsWithWildcard;
+
+        private Leaf(Route route, String[] paramNames, int[] paramSegments, boolean endsWithWildcard) {
+            this.route = route;
+            this.paramNames = paramNames;
+            this.paramSegments = paramSegments;
+            this.endsWithWildcard = endsWithWildcard;
+        }
+    }
+
+    private static final class Node {
+        private final String[] labels;
+        private final Node[] children;
+        private final Node param;
+        private final Node wildcard;
+        // Indexed by method ordinal
+        private final Leaf[] leaves;
+        private final boolean isTerminal;
+
+        private Node(String[] labels, Node[] children, Node param, Node wildcard, Leaf[] leaves,
+                boolean isTerminal) {
+            this.labels = labels;
+            this.children = children;
+            this.param = param;
+            this.wildcard = wildcard;
+            this.leaves = leaves;
+            this.isTerminal = isTerminal;
+        }
+
+        private boolean routes(int method) {
+            return method == ANY_METHOD ? isTerminal : leaves[method] != null;
+        }
+
+        // Binary search over the sorted labels without cutting the segment out of the path
+        private Node staticChild(String path, int start, int end) {
+            int low = 0;
+            int high = labels.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(labels[middle], path, start, end);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return children[middle];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String label, String path, int start, int end) {
+            int length = Math.min(label.length(), end - start);
+            for (int i = 0; i < length; i++) {
+                int difference = label.charAt(i) - path.charAt(start + i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return label.length() - (end - start);
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final Map<String, NodeBuilder> children = new TreeMap<>();
+        private final Leaf[] leaves = new Leaf[METHOD_COUNT];
+        private NodeBuilder param;
+        private NodeBuilder wildcard;
+
+        private NodeBuilder staticChild(String segment) {
+            return children.computeIfAbsent(segment, k -> new NodeBuilder());
+        }
+
+        private NodeBuilder paramChild() {
+            if (param == null) {
+                param = new NodeBuilder();
+            }
+            return param;
+        }
+
+        private NodeBuilder wildcardChild() {
+            if (wildcard == null) {
+                wildcard = new NodeBuilder();
+            }
+            return wildcard;
+        }
+
+        private void addRoute(Route route, List<String> names, List<Integer> segments, boolean prefix) {
+            RequestMethod method = RequestMethod.valueOf(route.getMethod());
+            if (leaves[method.ordinal()] != null) {
+                // Keep the first registration, as the linear scan used to
+                logger.warn("Duplicate route {} {} ignored", route.getMethod(), route.getPath());
+                return;
+            }
+
+            List<String> routeNames = new ArrayList<>(names);
+            List<Integer> routeSegments = new ArrayList<>(segments);
+            boolean endsWithWildcard = !segments.isEmpty() && isWildcard(segmentOf(route, segments));
+            if (prefix) {
+                routeNames.add(WILDCARD);
+                routeSegments.add(segmentsOf(route.getPath()).size());
+                endsWithWildcard = true;
+            }
+            leaves[method.ordinal()] = new Leaf(route, routeNames.toArray(new String[0]),
+                    routeSegments.stream().mapToInt(Integer::intValue).toArray(), endsWithWildcard);
+        }
+
+        private static String segmentOf(Route route, List<Integer> segments) {
+            return segmentsOf(route.getPath()).get(segments.get(segments.size() - 1));
+        }
+
+        private Node build() {
+            String[] labels = children.keySet().toArray(new String[0]);
+            Node[] builtChildren = new Node[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                builtChildren[i] = children.get(labels[i]).build();
+            }
+
+            boolean isTerminal = false;
+            for (Leaf leaf : leaves) {
+                isTerminal |= leaf != null;
+            }
+
+            return new Node(labels, builtChildren,
+                    param != null ? param.build() : null,
+                    wildcard != null ? wildcard.build() : null,
+                    leaves.clone(), isTerminal);
+        }
+    }
+}
@@ -1,168 +1,241 @@
 package infrastructure.api;
 
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import domain.model.Configuration;
 import domain.model.Controller;
-import domain.model.Header;
 import domain.model.Request;
 import domain.model.Response;
-import enums.HttpEncoding;
+import enums.RequestMethod;
+import infrastructure.api.middleware.AuthMiddleware;
+import infrastructure.api.middleware.CompressionMiddleware;
+import infrastructure.api.middleware.CorsMiddleware;
+import infrastructure.api.middleware.TimingMiddleware;
 import infrastructure.container.Container;
+import infrastructure.http.compression.ResponseCompressor;
+import infrastructure.http.exceptions.HttpParseException;
+import infrastructure.metrics.ServerMetrics;
 
 public class Router {
     private final static Logger logger = LogManager.getLogger(Router.class);
-    private final static List<Route> routes = new ArrayList<>();
+    private final static MethodType HANDLER_TYPE = MethodType.methodType(Response.class, Request.class,
+            OutputStream.class);
+    private final static Route NOT_FOUND = Route.of(RequestMethod.GET, "/404", Router::notFoundHandler);
+    private final static Route METHOD_NOT_ALLOWED = Route.of(RequestMethod.GET, "/405",
+            Router::methodNotAllowedHandler);
+    // Middlewares routes can name, by name
+    private static final Map<String, Middleware> middlewares = new ConcurrentHashMap<>();
+    private static volatile RouteTrie routes = RouteTrie.compile(List.of(), NOT_FOUND, METHOD_NOT_ALLOWED);
+    private volatile ResponseCompressor compressor;
+    private final ServerMetrics metrics = Container.getOrCreate(ServerMetrics.class);
 
     public Router() {
     }
 
+    // Makes the middleware available to routes under the name, replacing a built-in one of the same name
+    public static void registerMiddleware(String name, Middleware middleware) {
+        middlewares.put(name, middleware);
+    }
+
     // Accept multiple controllers and aggregate their routes
     public static void registerControllers(List<Controller> controllers) {
+        registerBuiltInMiddlewares();
         List<Route> allRoutes = new ArrayList<>();
         for (Controller controller : controllers) {
-            allRoutes.addAll(controller.getRoutes());
+            for (Route route : controller.getRoutes()) {
+                allRoutes.add(compose(link(route, controller)));
+            }
+        }
+
+        ServerMetrics metrics = Container.getOrCreate(ServerMetrics.class);
+        for (Route route : allRoutes) {
+            route.setLatency(metrics.routeLatency(route));
         }
+        NOT_FOUND.setLatency(metrics.routeLatency(NOT_FOUND));
+        METHOD_NOT_ALLOWED.setLatency(metrics.routeLatency(METHOD_NOT_ALLOWED));
 
-        routes.clear();
-        routes.addAll(allRoutes);
+        routes = RouteTrie.compile(allRoutes, NOT_FOUND, METHOD_NOT_ALLOWED);
+        logger.info("Compiled {} routes", allRoutes.size());
     }
 
-    public void perform(Request request, OutputStream output) {
-        Route route = resolve(request, output);
-        try {
-            Class<?> controllerClass = Class.forName(route.getClassName().replace("class ", ""));
-            Object controllerInstance = Container.getOrCreate(controllerClass);
-            Object responseObj = controllerClass.getMethod(route.getHandler(), Request.class, OutputStream.class)
-                    .invoke(controllerInstance, request, output);
+    private static void registerBuiltInMiddlewares() {
+        Configuration configuration = Container.getInstance(Configuration.class).orElseGet(Configuration::new);
+        middlewares.putIfAbsent("auth", new AuthMiddleware(configuration.getAuthToken()));
+        middlewares.putIfAbsent("cors", new CorsMiddleware(configuration.getCorsAllowedOrigin()));
+        middlewares.putIfAbsent("timing", new TimingMiddleware());
+        middlewares.putIfAbsent("compress",
+                new CompressionMiddleware(Container.getOrCreate(ResponseCompressor.class, configuration)));
+    }
+
+    // Wraps the handler in the route's middlewares once, so dispatch makes a single call
+    // whatever the route declares
+    private static Route compose(Route route) {
+        String[] names = route.getMiddlewares();
+        if (names == null || names.length == 0) {
+            return route;
+        }
 
-            if (responseObj instanceof Response response) {
-                ensureConnectionHeader(response, output);
+        List<Middleware> chain = new ArrayList<>(names.length);
+        for (String name : names) {
+            Middleware middleware = middlewares.get(name);
+            if (middleware == null) {
+                throw new IllegalArgumentException(
+                        "Unknown middleware " + name + " on route " + route.getMethod() + " " + route.getPath());
+            }
+            chain.add(middleware);
+        }
+        route.setChain(Middleware.compose(route.getRouteHandler(), chain));
+        return route;
+    }
 
-                logger.info("Response: {}", response);
-                boolean hasBeenEncoded = encodeResponse(request, output, response);
-                output.write(response.getRawResponse().getBytes(StandardCharsets.UTF_8));
+    // Binds a route declared by handler name to a generated RouteHandler once, so
+    // dispatch does no reflective lookups
+    private static Route link(Route route, Controller controller) {
+        if (route.getRouteHandler() != null) {
+            return route;
+        }
 
-                if (hasBeenEncoded) {
-                    output.write(response.getByteBody());
-                }
+        try {
+            Class<?> controllerClass = Class.forName(route.getClassName().replace("class ", ""));
+            Object target = controllerClass.isInstance(controller) ? controller : Container.getOrCreate(controllerClass);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handler = lookup.findVirtual(controllerClass, route.getHandler(), HANDLER_TYPE);
+            CallSite factory = LambdaMetafactory.metafactory(lookup, "handle",
+                    MethodType.methodType(RouteHandler.class, controllerClass), HANDLER_TYPE, handler, HANDLER_TYPE);
+            route.setRouteHandler((RouteHandler) factory.getTarget().invoke(target));
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(
+                    "Cannot link handler " + route.getHandler() + " of " + route.getClassName(), e);
+        }
+        return route;
+    }
 
-                output.flush();
-            } else {
+    // Handlers return their Response instead of writing it, so the connection can
+    // queue responses of pipelined requests and write them back in order
+    public Response dispatch(Request request) {
+        OutputStream output = OutputStream.nullOutputStream();
+        long start = System.nanoTime();
+        metrics.onDispatchStarted();
+        Route route = resolve(request);
+        try {
+            Response response = route.getChain().handle(request, output);
+            if (response == null) {
                 throw new IllegalStateException("Handler did not return a Response object");
             }
+            if (response.isShared()) {
+                response = response.copy();
+            }
+
+            if (response.hasStreamingBody()) {
+                prepareStreaming(request, response);
+            }
+            ensureConnectionHeader(request, response);
+
+            logger.debug("Response: {}", response);
+            long encodeStart = System.nanoTime();
+            encodeResponse(request, response);
+            metrics.onDispatched(route.getLatency(), start, encodeStart, System.nanoTime());
+            return response;
         } catch (Exception e) {
+            HttpParseException parseException = findParseException(e);
+            if (parseException != null) {
+                // Malformed or oversized streamed body, the connection cannot be reused
+                logger.warn("Rejecting request body: {}", parseException.getMessage());
+                return parseException.toResponse();
+            }
             logger.error("Error performing route action: {} - {}", e.getMessage(), e.getCause());
+            return internalServerError();
+        } finally {
+            metrics.onDispatchFinished();
         }
     }
 
-    public Route resolve(Request request, OutputStream output) {
-        for (Route route : routes) {
-            if (route.isSeachByStartsWith() && request.getPath().startsWith(route.getPath())
-                    && route.getMethod().equals(request.getMethod().name())) {
-                return route;
-            }
-
-            if (route.getPath().equals(request.getPath()) && route.getMethod().equals(request.getMethod().name())) {
-                return route;
+    private static HttpParseException findParseException(Throwable error) {
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpParseException parseException) {
+                return parseException;
             }
         }
+        return null;
+    }
 
-        return new Route.Builder()
-                .setPath("/404")
-                .setMethod("GET")
-                .setHandler("notFoundHandler")
-                .setClassName(this.getClass().toString())
-                .setDescription("Route not found")
-                .setMiddlewares(new String[] {})
+    public Route resolve(Request request) {
+        return routes.resolve(request);
+    }
+
+    public static Response notFoundHandler(Request request, OutputStream output) {
+        String message = "404 Not Found";
+        return new Response.Builder()
+                .version("HTTP/1.1")
+                .statusCode(404)
+                .statusMessage("Not Found")
+                .body(message)
+                .contentType("text/plain")
+                .contentLength(String.valueOf(message.length()))
                 .build();
     }
 
-    public void notFoundHandler(Request request, OutputStream output) {
-        try {
-            String message = "404 Not Found";
-            Response response = new Response.Builder()
-                    .version("HTTP/1.1")
-                    .statusCode(404)
-                    .statusMessage("Not Found")
-                    .body(message)
-                    .contentType("text/plain")
-                    .contentLength(String.valueOf(message.length()))
-                    .build();
-
-            output.write(response.getByteResponse());
-            output.flush();
-        } catch (Exception e) {
-            logger.error("Error in notFoundHandler: {}", e.getMessage());
-        }
+    public static Response methodNotAllowedHandler(Request request, OutputStream output) {
+        String message = "405 Method Not Allowed";
+        return new Response.Builder()
+                .statusCode(405)
+                .statusMessage("Method Not Allowed")
+                .body(message)
+                .contentType("text/plain")
+                .contentLength(String.valueOf(message.length()))
+                .addHeader("Allow", routes.allowedMethods(request.getPath()))
+                .build();
     }
 
-    private boolean encodeResponse(Request request, OutputStream output, Response response) {
-        // Check if request contains 'Accept-Encoding' header and apply encoding type if
-        // needed
-        if (request.getHeaders().containsKey("Accept-Encoding")) {
-            logger.info("Client supports encodings: {}", request.getHeaders().get("Accept-Encoding"));
-            String[] encodings = request.getHeaders().get("Accept-Encoding").split(",");
-            List<HttpEncoding> serverSupportedEncodingsFound = new ArrayList<>();
-
-            for (String encoding : encodings) {
-                if (HttpEncoding.isValidEncoding(encoding.trim())) {
-                    serverSupportedEncodingsFound.add(HttpEncoding.fromString(encoding.trim()));
-                }
-            }
+    private static Response internalServerError() {
+        String message = "Internal Server Error";
+        return new Response.Builder()
+                .statusCode(500)
+                .statusMessage(message)
+                .body(message)
+                .contentType("text/plain")
+                .contentLength(String.valueOf(message.length()))
+                .addHeader("Connection", "close")
+                .build();
+    }
 
-            AtomicInteger i = new AtomicInteger(0);
-            return applyEncoding(serverSupportedEncodingsFound, i, output, request, response);
+    private boolean encodeResponse(Request request, Response response) {
+        ResponseCompressor current = compressor;
+        if (current == null) {
+            // Looked up once, racing threads all get the container's single instance
+            Configuration configuration = Container.getInstance(Configuration.class)
+                    .orElseGet(Configuration::new);
+            current = Container.getOrCreate(ResponseCompressor.class, configuration);
+            compressor = current;
         }
-
-        return false;
+        return current.compress(request, response);
     }
 
-    private boolean applyEncoding(
-            List<HttpEncoding> serverSupportedEncodingsFound,
-            AtomicInteger i,
-            OutputStream output,
-            Request request,
-            Response response) {
-        if (!serverSupportedEncodingsFound.isEmpty()) {
-            HttpEncoding selectedEncoding = serverSupportedEncodingsFound.get(i.get());
-            logger.info("Selected encoding: {}", selectedEncoding.getValue());
-            try {
-                return response.encodeBody(selectedEncoding, output);
-            } catch (Exception e) {
-                logger.error("Error applying encoding {}: {}", selectedEncoding.getValue(), e.getMessage());
-                logger.warn("Trying next encoding if available...");
-                if (i.incrementAndGet() < serverSupportedEncodingsFound.size()) {
-                    return applyEncoding(serverSupportedEncodingsFound, i, output, request, response);
-                } else {
-                    logger.warn("No more encodings to try.");
-                }
-                return false;
-            }
+    // The body is produced after the connection has moved on to later requests, and
+    // HTTP/1.0 clients do not know chunked framing so theirs ends with the connection
+    private void prepareStreaming(Request request, Response response) {
+        request.detach();
+        if ("HTTP/1.0".equals(request.getVersion())) {
+            response.setChunked(false);
         }
-
-        return false;
     }
 
-    public void ensureConnectionHeader(Response response, OutputStream output) {
-        boolean isKeepAlive = Container.getServerInstance().isKeepAlive();
+    public void ensureConnectionHeader(Request request, Response response) {
+        boolean isKeepAlive = request.isKeepAlive() && !(response.hasStreamingBody() && !response.isChunked());
         try {
-            Optional<Header> existing = response.getHeaders().stream()
-                    .filter(h -> h.getKey().equalsIgnoreCase("connection"))
-                    .findFirst();
-
-            if (existing.isPresent()) {
-                existing.get().setValue(isKeepAlive ? "keep-alive" : "close");
-            } else {
-                response.getHeaders().add(new Header("Connection", isKeepAlive ? "keep-alive" : "close"));
-            }
+            response.getHeaders().set("Connection", isKeepAlive ? "keep-alive" : "close");
         } catch (Exception e) {
             logger.error("Error ensuring Connection header: {}", e.getMessage());
         }
@@ -1,20 +1,39 @@
 package infrastructure.api.controller;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import domain.model.Configuration;
 import domain.model.Controller;
+import domain.model.FileRegion;
 import domain.model.Request;
 import domain.model.Response;
+import enums.HttpEncoding;
+import enums.RequestMethod;
 import infrastructure.api.Route;
+import infrastructure.cache.FileCache;
 import infrastructure.container.Container;
+import infrastructure.http.AcceptEncoding;
+import infrastructure.http.ByteRange;
+import infrastructure.http.ConditionalRequest;
+import infrastructure.metrics.ServerMetrics;
 
 public class BaseController implements Controller {
         private static final Logger logger = LogManager.getLogger(BaseController.class);
@@ -30,11 +49,25 @@ public class BaseController implements Controller {
                 return response;
         }
 
+        // Echoes the last segment of the path, as /echo always has
         public Response echoHandler(Request request, OutputStream output) throws IOException {
-                String[] pathParts = request.getPath().split("/");
+                String message = request.getPathParam("message");
+                if (message == null || message.isEmpty()) {
+                        // Bare /echo, whose last segment is echo itself
+                        message = request.getPath();
+                        int query = message.indexOf('?');
+                        message = query < 0 ? message : message.substring(0, query);
+                }
+                if (message.indexOf('/') >= 0) {
+                        int end = message.length();
+                        while (end > 0 && message.charAt(end - 1) == '/') {
+                                end--;
+                        }
+                        message = message.substring(message.lastIndexOf('/', end - 1) + 1, end);
+                }
                 Response.Builder responseBuilder = new Response.Builder();
 
-                if (pathParts.length < 2) {
+                if (message.isEmpty()) {
                         responseBuilder
                                         .statusCode(400)
                                         .statusMessage("Bad Request")
@@ -45,7 +78,6 @@ public class BaseController implements Controller {
                         return responseBuilder.build();
                 }
 
-                String message = pathParts[pathParts.length - 1]; // get last part of the path
                 responseBuilder
                                 .statusCode(200)
                                 .statusMessage("OK")
@@ -57,7 +89,7 @@ public class BaseController implements Controller {
         }
 
         public Response userAgentHandler(Request request, OutputStream output) throws IOException {
-                String userAgent = request.getHeaders().get("User-Agent");
+                String userAgent = request.getHeader("User-Agent");
                 Response.Builder responseBuilder = new Response.Builder();
 
                 if (userAgent == null) {
@@ -89,8 +121,8 @@ public class BaseController implements Controller {
                                 .orElseThrow(() -> new RuntimeException("Configuration not found in container"));
 
                 String filesPathDirectory = config.getDirectory();
-                String[] pathParts = request.getPath().split("/");
-                if (pathParts.length < 3) {
+                String fileName = request.getPathParam("fileName");
+                if (fileName == null || fileName.isEmpty()) {
                         responseBuilder
                                         .statusCode(400)
                                         .statusMessage("Bad Request")
@@ -101,29 +133,154 @@ public class BaseController implements Controller {
                         return responseBuilder.build();
                 }
 
-                String fileName = pathParts[2];
-                logger.info("Full Path of Requested File: {}/{}", filesPathDirectory, fileName);
-                File file = new File(filesPathDirectory, fileName);
-                logger.info("Full path to file: {}", file.getAbsolutePath());
-                if (!file.exists() || !file.isFile() || !file.canRead()) {
-                        responseBuilder
-                                        .statusCode(404)
-                                        .statusMessage("Not Found")
-                                        .contentLength("9")
-                                        .contentType("text/plain")
-                                        .body("Not Found");
+                Path path = Path.of(filesPathDirectory, fileName);
+                FileCache fileCache = Container.getOrCreate(FileCache.class, config);
+                FileCache.Entry cached = fileCache.get(path);
+                boolean isCacheHit = cached != null;
+                BasicFileAttributes attributes = null;
+                if (cached == null) {
+                        logger.debug("Full path to file: {}", path.toAbsolutePath());
+                        attributes = readAttributes(path);
+                        if (attributes == null || !attributes.isRegularFile() || !Files.isReadable(path)) {
+                                responseBuilder
+                                                .statusCode(404)
+                                                .statusMessage("Not Found")
+                                                .contentLength("9")
+                                                .contentType("text/plain")
+                                                .body("Not Found");
 
-                        return responseBuilder.build();
+                                return responseBuilder.build();
+                        }
+                        // Loaded before the validators, so the first request already gets the gzip variant
+                        cached = fileCache.load(path, attributes);
+                }
+
+                // A pre-built .gz sibling is sent as it is to clients that accept gzip, else the
+                // variant kept with the cached file
+                boolean acceptsGzip = request.getHeader("Range") == null
+                                && AcceptEncoding.accepts(request.getHeader("Accept-Encoding"),
+                                                HttpEncoding.GZIP.getValue());
+                Path siblingPath = Path.of(filesPathDirectory, fileName + ".gz");
+                boolean hasSibling = fileCache.exists(siblingPath);
+                boolean hasGzipVariant = hasSibling || cached != null && cached.getGzipBody() != null;
+                boolean isGzip = false;
+                if (acceptsGzip && hasSibling) {
+                        FileCache.Entry cachedSibling = fileCache.get(siblingPath);
+                        BasicFileAttributes siblingAttributes = cachedSibling == null ? readAttributes(siblingPath)
+                                        : null;
+                        if (cachedSibling != null || siblingAttributes != null) {
+                                path = siblingPath;
+                                cached = cachedSibling != null ? cachedSibling
+                                                : fileCache.load(siblingPath, siblingAttributes);
+                                isCacheHit = cachedSibling != null;
+                                attributes = siblingAttributes;
+                                isGzip = true;
+                        }
+                }
+
+                // Hits are answered from the cached validators without touching the disk
+                long length = cached != null ? cached.getSize() : attributes.size();
+                FileTime lastModified = cached != null ? cached.getLastModified() : attributes.lastModifiedTime();
+                String entityTag = cached != null ? cached.getEntityTag()
+                                : ConditionalRequest.entityTag(length, lastModified);
+                byte[] body = cached != null ? cached.getBody() : null;
+                if (!isGzip && acceptsGzip && cached != null && cached.getGzipBody() != null) {
+                        body = cached.getGzipBody();
+                        entityTag = cached.getGzipEntityTag();
+                        isGzip = true;
+                }
+                responseBuilder
+                                .addHeader("ETag", entityTag)
+                                .addHeader("Last-Modified", cached != null ? cached.getLastModifiedDate()
+                                                : ConditionalRequest.httpDate(lastModified))
+                                .addHeader("Accept-Ranges", "bytes");
+                // Only files that have an encoded variant differ by Accept-Encoding
+                if (hasGzipVariant) {
+                        responseBuilder.addHeader("Vary", "Accept-Encoding");
+                }
+                if (isGzip) {
+                        responseBuilder.addHeader("Content-Encoding", HttpEncoding.GZIP.getValue());
+                }
+
+                // Revalidation never opens the file
+                if (ConditionalRequest.isNotModified(request, entityTag, lastModified)) {
+                        return responseBuilder
+                                        .statusCode(304)
+                                        .statusMessage("Not Modified")
+                                        .build();
+                }
+
+                List<ByteRange> ranges = ConditionalRequest.isRangeApplicable(request, entityTag, lastModified)
+                                ? ByteRange.parse(request.getHeader("Range"), length)
+                                : null;
+                if (ranges != null) {
+                        return rangeResponse(responseBuilder, path, length, ranges);
                 }
 
-                String body = Files.readString(file.toPath());
                 responseBuilder
                                 .statusCode(200)
                                 .statusMessage("OK")
-                                .contentType("application/octet-stream")
-                                .contentLength(String.valueOf(body.length()))
-                                .body(body);
+                                .contentType("application/octet-stream");
+                Container.getOrCreate(ServerMetrics.class).onFileServed(isCacheHit);
+                if (body != null) {
+                        return responseBuilder
+                                        .contentLength(String.valueOf(body.length))
+                                        .byteBody(body)
+                                        .build();
+                }
 
+                // Too big for the cache or changed while loading: streamed from the file to the socket,
+                // Content-Length comes from its size
+                return responseBuilder
+                                .fileBody(FileRegion.open(path))
+                                .build();
+        }
+
+        private static BasicFileAttributes readAttributes(Path path) {
+                try {
+                        return Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                        // Missing or unreadable
+                        return null;
+                }
+        }
+
+        private Response rangeResponse(Response.Builder responseBuilder, Path path, long length,
+                        List<ByteRange> ranges) throws IOException {
+                if (ranges.isEmpty()) {
+                        return responseBuilder
+                                        .statusCode(416)
+                                        .statusMessage("Range Not Satisfiable")
+                                        .addHeader("Content-Range", "bytes */" + length)
+                                        .build();
+                }
+
+                responseBuilder
+                                .statusCode(206)
+                                .statusMessage("Partial Content");
+                if (ranges.size() == 1) {
+                        ByteRange range = ranges.get(0);
+                        return responseBuilder
+                                        .contentType("application/octet-stream")
+                                        .addHeader("Content-Range", range.toContentRange(length))
+                                        .fileBody(FileRegion.open(path, range.getStart(), range.getLength()))
+                                        .build();
+                }
+
+                // multipart/byteranges: each part is framed by its boundary and headers
+                String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+                responseBuilder.contentType("multipart/byteranges; boundary=" + boundary);
+                for (int i = 0; i < ranges.size(); i++) {
+                        ByteRange range = ranges.get(i);
+                        String partHeader = (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                                        + "Content-Type: application/octet-stream\r\n"
+                                        + "Content-Range: " + range.toContentRange(length) + "\r\n\r\n";
+                        String closing = i == ranges.size() - 1 ? "\r\n--" + boundary + "--\r\n" : null;
+                        responseBuilder.fileBody(FileRegion.open(path, range.getStart(), range.getLength())
+                                        .framed(partHeader.getBytes(StandardCharsets.US_ASCII),
+                                                        closing != null ? closing.getBytes(StandardCharsets.US_ASCII)
+                                                                        : null));
+                }
                 return responseBuilder.build();
         }
 
@@ -133,8 +290,8 @@ public class BaseController implements Controller {
                                 .orElseThrow(() -> new RuntimeException("Configuration not found in container"));
 
                 String filesPathDirectory = config.getDirectory();
-                String[] pathParts = request.getPath().split("/");
-                if (pathParts.length < 3 || request.getBody() == null || request.getBody().isEmpty()) {
+                String fileName = request.getPathParam("fileName");
+                if (fileName == null || fileName.isEmpty() || !request.hasBody()) {
                         responseBuilder
                                         .statusCode(400)
                                         .statusMessage("Bad Request")
@@ -145,11 +302,12 @@ public class BaseController implements Controller {
                         return responseBuilder.build();
                 }
 
-                String fileName = pathParts[2];
-                String body = request.getBody();
-                File file = new File(filesPathDirectory, fileName);
-                Files.writeString(file.toPath(), body);
-                logger.info("File saved: {}", file.getAbsolutePath());
+                Path path = Path.of(filesPathDirectory, fileName);
+                writeAtomically(path, request.getBodyStream());
+                // Dropped right away rather than waiting for the directory watcher
+                Container.getOrCreate(FileCache.class, config).invalidate(path);
+                Container.getOrCreate(ServerMetrics.class).onFileSaved();
+                logger.debug("File saved: {}", path.toAbsolutePath());
                 responseBuilder
                                 .statusCode(201)
                                 .statusMessage("Created");
@@ -157,52 +315,39 @@ public class BaseController implements Controller {
                 return responseBuilder.build();
         }
 
+        // Streams the body to a temporary file next to the target and moves it into place once
+        // complete, so readers never see a partial upload and memory use does not grow with its size
+        private void writeAtomically(Path path, InputStream body) throws IOException {
+                Path temporary = Files.createTempFile(path.getParent(), "." + path.getFileName(), ".upload");
+                try {
+                        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE);
+                                        ReadableByteChannel source = Channels.newChannel(body)) {
+                                long position = 0;
+                                long transferred;
+                                while ((transferred = file.transferFrom(source, position, 1024 * 1024)) > 0) {
+                                        position += transferred;
+                                }
+                        }
+
+                        try {
+                                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE,
+                                                StandardCopyOption.REPLACE_EXISTING);
+                        } catch (AtomicMoveNotSupportedException e) {
+                                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                } finally {
+                        Files.deleteIfExists(temporary);
+                }
+        }
+
         @Override
         public List<Route> getRoutes() {
-                String className = this.getClass().getName();
                 return List.of(
-                                new Route.Builder()
-                                                .setPath("/")
-                                                .setMethod("GET")
-                                                .setHandler("baseHandler")
-                                                .setClassName(className)
-                                                .setDescription("Base handler")
-                                                .setMiddlewares(new String[] {})
-                                                .build(),
-                                new Route.Builder()
-                                                .isSearchByStartsWith(true)
-                                                .setPath("/echo")
-                                                .setMethod("GET")
-                                                .setHandler("echoHandler")
-                                                .setClassName(className)
-                                                .setDescription("Echoes back the request")
-                                                .setMiddlewares(new String[] {})
-                                                .build(),
-                                new Route.Builder()
-                                                .setPath("/user-agent")
-                                                .setMethod("GET")
-                                                .setHandler("userAgentHandler")
-                                                .setClassName(className)
-                                                .setDescription("Returns the User-Agent header")
-                                                .setMiddlewares(new String[] {})
-                                                .build(),
-                                new Route.Builder()
-                                                .setPath("/files")
-                                                .isSearchByStartsWith(true)
-                                                .setMethod("GET")
-                                                .setHandler("fileHandler")
-                                                .setClassName(className)
-                                                .setDescription("Returns the file requested as second part of the path")
-                                                .setMiddlewares(new String[] {})
-                                                .build(),
-                                new Route.Builder()
-                                                .setPath("/files")
-                                                .isSearchByStartsWith(true)
-                                                .setMethod("POST")
-                                                .setHandler("saveFileHandler")
-                                                .setClassName(className)
-                                                .setDescription("Saves the file sent in the body")
-                                                .setMiddlewares(new String[] {})
-                                                .build());
+                                Route.of(RequestMethod.GET, "/", this::baseHandler),
+                                Route.of(RequestMethod.GET, "/echo", this::echoHandler),
+                                Route.of(RequestMethod.GET, "/echo/{message*}", this::echoHandler),
+                                Route.of(RequestMethod.GET, "/user-agent", this::userAgentHandler),
+                                Route.of(RequestMethod.GET, "/files/{fileName}", this::fileHandler),
+                                Route.of(RequestMethod.POST, "/files/{fileName}", this::saveFileHandler));
         }
 }
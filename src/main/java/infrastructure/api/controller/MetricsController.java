@@ -0,0 +1,38 @@
+package infrastructure.api.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import domain.model.Controller;
+import domain.model.Request;
+import domain.model.Response;
+import enums.RequestMethod;
+import infrastructure.api.Route;
+import infrastructure.container.Container;
+import infrastructure.metrics.ServerMetrics;
+
+// Serves the server's metrics in the Prometheus text format
+public class MetricsController implements Controller {
+        private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+        public Response metricsHandler(Request request, OutputStream output) throws IOException {
+                StringBuilder text = new StringBuilder(8 * 1024);
+                Container.getOrCreate(ServerMetrics.class).getRegistry().writeTo(text);
+                byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+                return new Response.Builder()
+                                .statusCode(200)
+                                .statusMessage("OK")
+                                .contentType(CONTENT_TYPE)
+                                .contentLength(String.valueOf(body.length))
+                                .byteBody(body)
+                                .build();
+        }
+
+        @Override
+        public List<Route> getRoutes() {
+                return List.of(Route.of(RequestMethod.GET, "/metrics", this::metricsHandler));
+        }
+}
@@ -0,0 +1,51 @@
+package infrastructure.api.middleware;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import domain.model.Request;
+import domain.model.Response;
+import infrastructure.api.Middleware;
+import infrastructure.api.RouteHandler;
+
+/**
+ * Lets through requests carrying the configured bearer token and answers the
+ * rest with a shared 401 without running the handler. With no token configured every
+ * request is rejected, a route asking for auth is never left open.
+ */
+public class AuthMiddleware implements Middleware {
+    private static final String SCHEME = "Bearer ";
+    private static final byte[] UNAUTHORIZED_BODY = "401 Unauthorized".getBytes(StandardCharsets.US_ASCII);
+    private static final Response UNAUTHORIZED = new Response.Builder()
+            .statusCode(401)
+            .statusMessage("Unauthorized")
+            .byteBody(UNAUTHORIZED_BODY)
+            .contentType("text/plain")
+            .contentLength(String.valueOf(UNAUTHORIZED_BODY.length))
+            .addHeader("WWW-Authenticate", "Bearer")
+            .build()
+            .share();
+
+    private final byte[] token;
+
+    public AuthMiddleware(String token) {
+        this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Response handle(Request request, OutputStream output, RouteHandler next) throws IOException {
+        return isAuthorized(request.getHeader("Authorization")) ? next.handle(request, output) : UNAUTHORIZED;
+    }
+
+    private boolean isAuthorized(String authorization) {
+        if (token == null || authorization == null
+                || !authorization.regionMatches(true, 0, SCHEME, 0, SCHEME.length())) {
+            return false;
+        }
+        // Compared in constant time so the response time does not give the token away
+        byte[] given = authorization.substring(SCHEME.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(token, given);
+    }
+}
@@ -0,0 +1,32 @@
+package infrastructure.api.middleware;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import domain.model.Request;
+import domain.model.Response;
+import infrastructure.api.Middleware;
+import infrastructure.api.RouteHandler;
+import infrastructure.http.compression.ResponseCompressor;
+
+/**
+ * Negotiates and applies the content coding at this point of the chain, so
+ * the middlewares outside it see the encoded body. Routes without it are
+ * still compressed once their chain returns.
+ */
+public class CompressionMiddleware implements Middleware {
+    private final ResponseCompressor compressor;
+
+    public CompressionMiddleware(ResponseCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Response handle(Request request, OutputStream output, RouteHandler next) throws IOException {
+        Response response = next.handle(request, output);
+        if (response != null) {
+            compressor.compress(request, response);
+        }
+        return response;
+    }
+}
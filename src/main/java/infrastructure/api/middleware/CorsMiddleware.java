@@ -0,0 +1,42 @@
+package infrastructure.api.middleware;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import domain.model.Request;
+import domain.model.Response;
+import infrastructure.api.Middleware;
+import infrastructure.api.RouteHandler;
+
+/**
+ * Allows cross-origin reads of the route's responses from the configured
+ * origin, or from any with *. Requests without an Origin header are not
+ * cross-origin and get no CORS headers.
+ */
+public class CorsMiddleware implements Middleware {
+    private final String allowedOrigin;
+
+    public CorsMiddleware(String allowedOrigin) {
+        this.allowedOrigin = allowedOrigin == null || allowedOrigin.isEmpty() ? "*" : allowedOrigin;
+    }
+
+    @Override
+    public Response handle(Request request, OutputStream output, RouteHandler next) throws IOException {
+        Response response = next.handle(request, output);
+        String origin = request.getHeader("Origin");
+        if (response == null || origin == null) {
+            return response;
+        }
+
+        if ("*".equals(allowedOrigin)) {
+            response.addHeader("Access-Control-Allow-Origin", "*");
+        } else {
+            // The answer depends on the origin, so caches must not share it between origins
+            response.addHeader("Vary", "Origin");
+            if (allowedOrigin.equalsIgnoreCase(origin)) {
+                response.addHeader("Access-Control-Allow-Origin", allowedOrigin);
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,24 @@
+package infrastructure.api.middleware;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+import domain.model.Request;
+import domain.model.Response;
+import infrastructure.api.Middleware;
+import infrastructure.api.RouteHandler;
+
+// Reports the time the rest of the chain took in a Server-Timing header, in milliseconds
+public class TimingMiddleware implements Middleware {
+    @Override
+    public Response handle(Request request, OutputStream output, RouteHandler next) throws IOException {
+        long start = System.nanoTime();
+        Response response = next.handle(request, output);
+        if (response != null) {
+            long micros = (System.nanoTime() - start) / 1000;
+            response.addHeader("Server-Timing", "app;dur=" + BigDecimal.valueOf(micros, 3).toPlainString());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,372 @@
+package infrastructure.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import enums.HttpEncoding;
+import infrastructure.container.Container;
+import infrastructure.http.ConditionalRequest;
+import infrastructure.http.compression.ResponseCompressor;
+
+/**
+ * Byte-weighted cache of small files served from the files directory, with a
+ * segmented LRU policy: new entries go to a probation segment and are promoted
+ * to the protected segment when hit again, so a scan over many cold files
+ * cannot flush the hot ones. Entries are dropped when a WatchService reports
+ * a change in the directory, or, if the directory cannot be watched, when the
+ * file's mtime or size no longer match. Files worth compressing keep their
+ * gzip variant alongside, encoded once when they are loaded.
+ */
+public class FileCache implements Closeable {
+    private static final Logger logger = LogManager.getLogger(FileCache.class);
+    private static final int PROTECTED_PERCENT = 80;
+    private static final int MAX_MISSING = 10000;
+
+    private final long maxBytes;
+    private final long maxFileSize;
+    private final long maxProtectedBytes;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    // Paths known not to exist, only trusted while the directory is watched
+    private final Map<Path, Boolean> missing = new ConcurrentHashMap<>();
+    // Guards the segments, hits only reorder them when the lock is free
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Path, Entry> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Path, Entry> protectedSegment = new LinkedHashMap<>();
+    private long probationBytes = 0;
+    private long protectedBytes = 0;
+    // Bumped on every invalidation so a load that raced with a change is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final WatchService watchService;
+    private volatile boolean watching = false;
+    private final ResponseCompressor compressor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FileCache(Configuration configuration) {
+        this.maxBytes = Math.max(0, configuration.getFileCacheMaxBytes());
+        this.maxFileSize = Math.min(maxBytes, configuration.getFileCacheMaxFileSize());
+        this.maxProtectedBytes = maxBytes * PROTECTED_PERCENT / 100;
+        this.compressor = Container.getOrCreate(ResponseCompressor.class, configuration);
+        this.watchService = maxBytes > 0 ? watch(Path.of(configuration.getDirectory())) : null;
+        logger.info("File cache {} with a budget of {} bytes", maxBytes > 0 ? "enabled" : "disabled", maxBytes);
+    }
+
+    public static class Entry {
+        private final Path path;
+        private final byte[] body;
+        private final FileTime lastModified;
+        private final String entityTag;
+        private final String lastModifiedDate;
+        // Null when the file is too small or does not get smaller
+        private final byte[] gzipBody;
+        private final String gzipEntityTag;
+
+        private Entry(Path path, byte[] body, byte[] gzipBody, FileTime lastModified) {
+            this.path = path;
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.lastModified = lastModified;
+            this.entityTag = ConditionalRequest.entityTag(body.length, lastModified);
+            this.lastModifiedDate = ConditionalRequest.httpDate(lastModified);
+            // Each representation needs its own strong validator
+            this.gzipEntityTag = gzipBody == null ? null
+                    : entityTag.substring(0, entityTag.length() - 1) + "-gzip\"";
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public long getSize() {
+            return body.length;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public String getGzipEntityTag() {
+            return gzipEntityTag;
+        }
+
+        // Bytes the entry takes from the budget, both variants included
+        long getWeight() {
+            return body.length + (gzipBody != null ? gzipBody.length : 0);
+        }
+
+        public FileTime getLastModified() {
+            return lastModified;
+        }
+
+        public String getEntityTag() {
+            return entityTag;
+        }
+
+        public String getLastModifiedDate() {
+            return lastModifiedDate;
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public Entry get(Path path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (!watching && isStale(entry)) {
+            invalidate(path);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                recordAccess(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entry;
+    }
+
+    // Existence check that avoids the filesystem for cached and known missing files
+    public boolean exists(Path path) {
+        if (entries.containsKey(path)) {
+            return true;
+        }
+        if (watching && missing.containsKey(path)) {
+            return false;
+        }
+
+        boolean exists = Files.isRegularFile(path);
+        if (!exists && watching && isEnabled()) {
+            if (missing.size() >= MAX_MISSING) {
+                missing.clear();
+            }
+            missing.put(path, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    /**
+     * Reads the file into the cache if it fits, returning null when it does
+     * not so the caller streams it from disk instead.
+     */
+    public Entry load(Path path, BasicFileAttributes attributes) throws IOException {
+        if (!isEnabled() || attributes.size() > maxFileSize) {
+            return null;
+        }
+
+        long loadGeneration = generation.get();
+        byte[] body = Files.readAllBytes(path);
+        if (body.length != attributes.size()) {
+            // Changed while being read, serve it from disk this time
+            return null;
+        }
+
+        byte[] gzipBody = compressor.precompress(HttpEncoding.GZIP.getValue(), body);
+        Entry entry = new Entry(path, body, gzipBody, attributes.lastModifiedTime());
+        lock.lock();
+        try {
+            if (generation.get() != loadGeneration || entries.containsKey(path)) {
+                return entry;
+            }
+            entries.put(path, entry);
+            probation.put(path, entry);
+            probationBytes += entry.getWeight();
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        return entry;
+    }
+
+    public void invalidate(Path path) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            missing.remove(path);
+            Entry entry = entries.remove(path);
+            if (entry != null) {
+                removeFromSegments(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            missing.clear();
+            entries.clear();
+            probation.clear();
+            protectedSegment.clear();
+            probationBytes = 0;
+            protectedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordAccess(Entry entry) {
+        // The entry may have been replaced since it was read from the map
+        Path path = entry.getPath();
+        if (probation.get(path) == entry) {
+            probation.remove(path);
+            probationBytes -= entry.getWeight();
+            protectedSegment.put(path, entry);
+            protectedBytes += entry.getWeight();
+
+            // Overflow of the protected segment goes back to probation instead of out of the cache
+            Iterator<Entry> oldest = protectedSegment.values().iterator();
+            while (protectedBytes > maxProtectedBytes && oldest.hasNext()) {
+                Entry demoted = oldest.next();
+                oldest.remove();
+                protectedBytes -= demoted.getWeight();
+                probation.put(demoted.getPath(), demoted);
+                probationBytes += demoted.getWeight();
+            }
+        } else if (protectedSegment.get(path) == entry) {
+            protectedSegment.remove(path);
+            protectedSegment.put(path, entry);
+        }
+    }
+
+    private void evict() {
+        while (probationBytes + protectedBytes > maxBytes) {
+            LinkedHashMap<Path, Entry> segment = probation.isEmpty() ? protectedSegment : probation;
+            Iterator<Entry> oldest = segment.values().iterator();
+            Entry victim = oldest.next();
+            oldest.remove();
+            if (segment == probation) {
+                probationBytes -= victim.getWeight();
+            } else {
+                protectedBytes -= victim.getWeight();
+            }
+            entries.remove(victim.getPath());
+            evictions.increment();
+        }
+    }
+
+    private void removeFromSegments(Entry entry) {
+        if (probation.remove(entry.getPath()) != null) {
+            probationBytes -= entry.getWeight();
+        } else if (protectedSegment.remove(entry.getPath()) != null) {
+            protectedBytes -= entry.getWeight();
+        }
+    }
+
+    private boolean isStale(Entry entry) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(entry.getPath(), BasicFileAttributes.class);
+            return attributes.size() != entry.getSize() || !attributes.lastModifiedTime().equals(entry.getLastModified());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private WatchService watch(Path directory) {
+        try {
+            WatchService service = directory.getFileSystem().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watching = true;
+            Thread.ofPlatform().name("File-Cache-Watcher").daemon().start(() -> processEvents(directory, service));
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Cannot watch {}, checking modification times instead: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
+    private void processEvents(Path directory, WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        invalidateAll();
+                    } else {
+                        invalidate(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("Stopped watching {}, checking modification times instead", directory);
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Cache closed
+        }
+        watching = false;
+        invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getSizeInBytes() {
+        lock.lock();
+        try {
+            return probationBytes + protectedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileCache [entries=" + entries.size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + "]";
+    }
+}
@@ -8,6 +8,8 @@ import org.apache.logging.log4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 
 import domain.model.Configuration;
+import enums.ExecutorType;
+import enums.ServerEngine;
 
 public class YamlConfigurationLoader {
     private final static Logger logger = LogManager.getLogger(YamlConfigurationLoader.class);
@@ -58,6 +60,293 @@ public class YamlConfigurationLoader {
             logger.warn("Directory not specified in configuration file. Using default directory /tmp.");
         }
 
+        // Transport engine
+        if (serverConfig.containsKey("engine")) {
+            try {
+                builder.engine(ServerEngine.fromString((String) serverConfig.get("engine")));
+            } catch (ClassCastException | IllegalArgumentException e) {
+                logger.error("Invalid engine in configuration file. Using default engine blocking.");
+            }
+        }
+
+        if (serverConfig.containsKey("eventLoops")) {
+            try {
+                builder.eventLoops((Integer) serverConfig.get("eventLoops"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for eventLoops in configuration file. Using one per core.");
+            }
+        }
+
+        // Listening sockets
+        if (serverConfig.get("listener") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> listenerConfig = (Map<String, Object>) serverConfig.get("listener");
+            loadListener(listenerConfig, builder);
+        }
+
+        // Connection executor
+        if (serverConfig.get("executor") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> executorConfig = (Map<String, Object>) serverConfig.get("executor");
+            loadExecutor(executorConfig, builder);
+        }
+
+        // Pipelining
+        if (serverConfig.get("pipelining") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> pipeliningConfig = (Map<String, Object>) serverConfig.get("pipelining");
+            if (pipeliningConfig.containsKey("parallel")) {
+                try {
+                    builder.parallelPipelining((Boolean) pipeliningConfig.get("parallel"));
+                } catch (ClassCastException e) {
+                    logger.error("Invalid type for pipelining.parallel in configuration file. Using default false.");
+                }
+            }
+        }
+
+        // Request limits
+        if (serverConfig.get("limits") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> limitsConfig = (Map<String, Object>) serverConfig.get("limits");
+            loadLimits(limitsConfig, builder);
+        }
+
+        // File cache
+        if (serverConfig.get("fileCache") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> fileCacheConfig = (Map<String, Object>) serverConfig.get("fileCache");
+            loadFileCache(fileCacheConfig, builder);
+        }
+
+        // Response compression
+        if (serverConfig.get("compression") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> compressionConfig = (Map<String, Object>) serverConfig.get("compression");
+            loadCompression(compressionConfig, builder);
+        }
+
+        // Pooled buffers
+        if (serverConfig.get("buffers") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> buffersConfig = (Map<String, Object>) serverConfig.get("buffers");
+            loadBuffers(buffersConfig, builder);
+        }
+
+        // Connection lifecycle
+        if (serverConfig.get("connections") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> connectionsConfig = (Map<String, Object>) serverConfig.get("connections");
+            loadConnections(connectionsConfig, builder);
+        }
+
+        // Access log
+        if (serverConfig.get("accessLog") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> accessLogConfig = (Map<String, Object>) serverConfig.get("accessLog");
+            loadAccessLog(accessLogConfig, builder);
+        }
+
+        // Route middleware
+        if (serverConfig.get("middleware") instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> middlewareConfig = (Map<String, Object>) serverConfig.get("middleware");
+            loadMiddleware(middlewareConfig, builder);
+        }
+
         return builder.build();
     }
+
+    private void loadMiddleware(Map<String, Object> middlewareConfig, Configuration.Builder builder) {
+        if (middlewareConfig.containsKey("authToken")) {
+            try {
+                builder.authToken((String) middlewareConfig.get("authToken"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for middleware.authToken in configuration file. Using default none.");
+            }
+        }
+
+        if (middlewareConfig.containsKey("corsAllowedOrigin")) {
+            try {
+                builder.corsAllowedOrigin((String) middlewareConfig.get("corsAllowedOrigin"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for middleware.corsAllowedOrigin in configuration file. Using default *.");
+            }
+        }
+    }
+
+    private void loadAccessLog(Map<String, Object> accessLogConfig, Configuration.Builder builder) {
+        if (accessLogConfig.containsKey("file")) {
+            try {
+                builder.accessLogFile((String) accessLogConfig.get("file"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for accessLog.file in configuration file. Access log disabled.");
+            }
+        }
+
+        if (accessLogConfig.containsKey("bufferSize")) {
+            try {
+                builder.accessLogBufferSize((Integer) accessLogConfig.get("bufferSize"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for accessLog.bufferSize in configuration file. Using default 8192.");
+            }
+        }
+    }
+
+    private void loadListener(Map<String, Object> listenerConfig, Configuration.Builder builder) {
+        if (listenerConfig.containsKey("acceptors")) {
+            try {
+                builder.acceptors((Integer) listenerConfig.get("acceptors"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for listener.acceptors in configuration file. Using default 1.");
+            }
+        }
+
+        if (listenerConfig.containsKey("backlog")) {
+            try {
+                builder.backlog((Integer) listenerConfig.get("backlog"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for listener.backlog in configuration file. Using default 1024.");
+            }
+        }
+    }
+
+    private void loadConnections(Map<String, Object> connectionsConfig, Configuration.Builder builder) {
+        if (connectionsConfig.containsKey("maxRequests")) {
+            try {
+                builder.maxRequestsPerConnection((Integer) connectionsConfig.get("maxRequests"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for connections.maxRequests in configuration file. Using default 1000.");
+            }
+        }
+
+        if (connectionsConfig.containsKey("idleTimeout")) {
+            try {
+                builder.idleTimeout((Integer) connectionsConfig.get("idleTimeout"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for connections.idleTimeout in configuration file. Using default 30000.");
+            }
+        }
+
+        if (connectionsConfig.containsKey("headerTimeout")) {
+            try {
+                builder.headerTimeout((Integer) connectionsConfig.get("headerTimeout"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for connections.headerTimeout in configuration file. Using default 10000.");
+            }
+        }
+
+        if (connectionsConfig.containsKey("drainTimeout")) {
+            try {
+                builder.drainTimeout((Integer) connectionsConfig.get("drainTimeout"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for connections.drainTimeout in configuration file. Using default 30000.");
+            }
+        }
+    }
+
+    private void loadBuffers(Map<String, Object> buffersConfig, Configuration.Builder builder) {
+        if (buffersConfig.containsKey("maxDirectBytes")) {
+            try {
+                builder.directBufferPoolMaxBytes((Integer) buffersConfig.get("maxDirectBytes"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for buffers.maxDirectBytes in configuration file. Using default 67108864.");
+            }
+        }
+    }
+
+    private void loadCompression(Map<String, Object> compressionConfig, Configuration.Builder builder) {
+        if (compressionConfig.containsKey("minSize")) {
+            try {
+                builder.compressionMinSize((Integer) compressionConfig.get("minSize"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for compression.minSize in configuration file. Using default 256.");
+            }
+        }
+
+        if (compressionConfig.containsKey("cacheMaxBytes")) {
+            try {
+                builder.compressionCacheMaxBytes((Integer) compressionConfig.get("cacheMaxBytes"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for compression.cacheMaxBytes in configuration file. Using default 8388608.");
+            }
+        }
+    }
+
+    private void loadFileCache(Map<String, Object> fileCacheConfig, Configuration.Builder builder) {
+        if (fileCacheConfig.containsKey("maxBytes")) {
+            try {
+                builder.fileCacheMaxBytes((Integer) fileCacheConfig.get("maxBytes"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for fileCache.maxBytes in configuration file. Using default 67108864.");
+            }
+        }
+
+        if (fileCacheConfig.containsKey("maxFileSize")) {
+            try {
+                builder.fileCacheMaxFileSize((Integer) fileCacheConfig.get("maxFileSize"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for fileCache.maxFileSize in configuration file. Using default 1048576.");
+            }
+        }
+    }
+
+    private void loadLimits(Map<String, Object> limitsConfig, Configuration.Builder builder) {
+        if (limitsConfig.containsKey("maxHeaderCount")) {
+            try {
+                builder.maxHeaderCount((Integer) limitsConfig.get("maxHeaderCount"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for maxHeaderCount in configuration file. Using default 100.");
+            }
+        }
+
+        if (limitsConfig.containsKey("maxHeaderSize")) {
+            try {
+                builder.maxHeaderSize((Integer) limitsConfig.get("maxHeaderSize"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for maxHeaderSize in configuration file. Using default 16384.");
+            }
+        }
+
+        if (limitsConfig.containsKey("maxBodySize")) {
+            try {
+                builder.maxBodySize((Integer) limitsConfig.get("maxBodySize"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for maxBodySize in configuration file. Using default 10485760.");
+            }
+        }
+
+        if (limitsConfig.containsKey("maxStreamedBodySize")) {
+            try {
+                builder.maxStreamedBodySize(((Number) limitsConfig.get("maxStreamedBodySize")).longValue());
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for maxStreamedBodySize in configuration file. Using default 8589934592.");
+            }
+        }
+    }
+
+    private void loadExecutor(Map<String, Object> executorConfig, Configuration.Builder builder) {
+        if (executorConfig.containsKey("type")) {
+            try {
+                builder.executorType(ExecutorType.fromString((String) executorConfig.get("type")));
+            } catch (ClassCastException | IllegalArgumentException e) {
+                logger.error("Invalid executor type in configuration file. Using default executor virtual.");
+            }
+        }
+
+        if (executorConfig.containsKey("workerThreads")) {
+            try {
+                builder.workerThreads((Integer) executorConfig.get("workerThreads"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for workerThreads in configuration file. Using default 200.");
+            }
+        }
+
+        if (executorConfig.containsKey("maxConnections")) {
+            try {
+                builder.maxConnections((Integer) executorConfig.get("maxConnections"));
+            } catch (ClassCastException e) {
+                logger.error("Invalid type for maxConnections in configuration file. Using default 10000.");
+            }
+        }
+    }
 }
@@ -2,20 +2,25 @@ package infrastructure.container;
 
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import infrastructure.container.exceptions.ContainerException;
-import infrastructure.server.Server;
+import infrastructure.server.HttpServer;
 
 public class Container {
     private static final Logger logger = LogManager.getLogger(Container.class);
-    private static final Map<String, Object> instances = new HashMap<>();
+    private static final Map<String, Object> instances = new ConcurrentHashMap<>();
+    // Results of assignable lookups, NONE when nothing matched. Dropped whenever an instance is added
+    private static final Map<Class<?>, Object> typeCache = new ConcurrentHashMap<>();
+    private static final Object NONE = new Object();
+    // Guards creation only, reads never take it. Reentrant so constructors can use the container
+    private static final Object creationLock = new Object();
     private static final String ERROR_INSTANTIATION = "Failed to instantiate class: %s";
 
     private Container() {
@@ -38,16 +43,32 @@ public class Container {
         }
 
         T instance = createInstance(type, args);
-        instances.put(name, instance);
+        synchronized (creationLock) {
+            instances.put(name, instance);
+            typeCache.clear();
+        }
         logger.info("Registered instance of {} with name {}", type.getName(), name);
         return instance;
     }
 
     @SuppressWarnings("unchecked")
     public static <T> T getOrCreate(Class<T> type, Object... args) {
-        return (T) instances.computeIfAbsent(
-                type.getName(),
-                k -> createInstance(type, args));
+        Object instance = instances.get(type.getName());
+        if (instance != null) {
+            return (T) instance;
+        }
+
+        // Created under the lock rather than in computeIfAbsent, since constructors
+        // may call back into the container
+        synchronized (creationLock) {
+            instance = instances.get(type.getName());
+            if (instance == null) {
+                instance = createInstance(type, args);
+                instances.put(type.getName(), instance);
+                typeCache.clear();
+            }
+            return (T) instance;
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -56,10 +77,17 @@ public class Container {
             throw new IllegalArgumentException("Type cannot be null");
         }
 
-        return instances.entrySet().stream()
-                .filter(entry -> type.isAssignableFrom(entry.getValue().getClass()))
-                .map(entry -> (T) entry.getValue())
-                .findFirst();
+        Object cached = typeCache.get(type);
+        if (cached == null) {
+            // Filled under the lock so a lookup racing with a registration cannot cache a stale result
+            synchronized (creationLock) {
+                cached = typeCache.computeIfAbsent(type, k -> instances.values().stream()
+                        .filter(type::isInstance)
+                        .findFirst()
+                        .orElse(NONE));
+            }
+        }
+        return cached == NONE ? Optional.empty() : Optional.of((T) cached);
     }
 
     public static <T> Optional<T> getInstance(String name, Class<T> type) {
@@ -93,7 +121,10 @@ public class Container {
     }
 
     public static void clear() {
-        instances.clear();
+        synchronized (creationLock) {
+            instances.clear();
+            typeCache.clear();
+        }
         logger.debug("Cleared all registered instances in the container");
     }
 
@@ -101,8 +132,8 @@ public class Container {
         return List.copyOf(instances.keySet());
     }
 
-    public static Server getServerInstance() {
-        return Container.getInstance(Server.class)
+    public static HttpServer getServerInstance() {
+        return Container.getInstance(HttpServer.class)
                 .orElseThrow(() -> new ContainerException("Server instance is not registered in the container"));
     }
 }
@@ -0,0 +1,75 @@
+package infrastructure.http;
+
+import java.util.List;
+
+import enums.HttpEncoding;
+
+/**
+ * Content negotiation for the Accept-Encoding header, honouring q-values and
+ * the {@code *} wildcard.
+ */
+public class AcceptEncoding {
+    private AcceptEncoding() {
+    }
+
+    /**
+     * Picks the available content coding with the highest q-value, preferring
+     * the earlier one in {@code available} on ties. Returns null when identity
+     * should be used.
+     */
+    public static String negotiate(String header, List<String> available) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+
+        String best = null;
+        double bestQuality = 0;
+        for (String encoding : available) {
+            double quality = qualityOf(header, encoding);
+            if (quality > bestQuality) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    public static boolean accepts(String header, String encoding) {
+        return header != null && qualityOf(header, encoding) > 0;
+    }
+
+    // q-value for the encoding: its own entry wins over *, and neither means not acceptable
+    private static double qualityOf(String header, String encoding) {
+        double wildcard = 0;
+        for (String entry : header.split(",")) {
+            int semicolon = entry.indexOf(';');
+            String coding = (semicolon < 0 ? entry : entry.substring(0, semicolon)).trim();
+            double quality = semicolon < 0 ? 1 : parseQuality(entry.substring(semicolon + 1));
+
+            if (coding.equalsIgnoreCase(encoding)
+                    || (encoding.equals(HttpEncoding.GZIP.getValue()) && coding.equalsIgnoreCase("x-gzip"))) {
+                return quality;
+            }
+            if (coding.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.trim();
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+                    && parameter.charAt(1) == '=') {
+                try {
+                    double quality = Double.parseDouble(parameter.substring(2).trim());
+                    return quality >= 0 && quality <= 1 ? quality : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,163 @@
+package infrastructure.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import infrastructure.http.exceptions.HttpParseException;
+
+/**
+ * Incremental decoder for a request body that is streamed to the handler
+ * rather than buffered: either a fixed number of bytes from Content-Length or
+ * a chunked body. It consumes the framing from the connection's read buffer
+ * and copies out only the body bytes, keeping its progress between reads.
+ */
+public class BodyDecoder {
+    // Interim response telling a client that sent Expect: 100-continue to go ahead with the body
+    public static final byte[] CONTINUE_RESPONSE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    // Chunk-size lines and trailer fields are never expected to be anywhere near this
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    private enum State {
+        SIZE,
+        EXTENSION,
+        DATA,
+        DATA_END,
+        TRAILER,
+        DONE
+    }
+
+    private final boolean chunked;
+    private final long maxLength;
+    private State state;
+    private long remaining;
+    private long decoded = 0;
+    private int lineLength = 0;
+    private boolean sizeSeen = false;
+    private boolean lineHasContent = false;
+
+    private BodyDecoder(boolean chunked, long length, long maxLength) {
+        this.chunked = chunked;
+        this.maxLength = maxLength;
+        this.remaining = length;
+        this.state = chunked ? State.SIZE : length == 0 ? State.DONE : State.DATA;
+    }
+
+    public static BodyDecoder fixed(long length) {
+        return new BodyDecoder(false, length, length);
+    }
+
+    public static BodyDecoder chunked(long maxLength) {
+        return new BodyDecoder(true, 0, maxLength);
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    // Body bytes handed out so far
+    public long getDecodedLength() {
+        return decoded;
+    }
+
+    /**
+     * Copies body bytes from a buffer in read mode into {@code target},
+     * skipping the chunk framing, until the target is full, the buffer is
+     * empty or the body is complete. Returns the number of bytes copied.
+     */
+    public int decode(ByteBuffer source, byte[] target, int offset, int length) {
+        int copied = 0;
+        while (source.hasRemaining() && state != State.DONE) {
+            if (state == State.DATA) {
+                if (copied == length) {
+                    break;
+                }
+                int count = (int) Math.min(Math.min(remaining, length - copied), source.remaining());
+                source.get(target, offset + copied, count);
+                copied += count;
+                remaining -= count;
+                decoded += count;
+                if (remaining == 0) {
+                    state = chunked ? State.DATA_END : State.DONE;
+                }
+                continue;
+            }
+
+            readFraming(source.get());
+        }
+        return copied;
+    }
+
+    private void readFraming(byte b) {
+        if (b != '\n' && ++lineLength > MAX_LINE_LENGTH) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        switch (state) {
+            case SIZE: {
+                int digit = Character.digit(b, 16);
+                if (digit >= 0) {
+                    if (remaining > Long.MAX_VALUE >> 4) {
+                        throw new HttpParseException(413, "Payload Too Large");
+                    }
+                    remaining = remaining * 16 + digit;
+                    sizeSeen = true;
+                } else if (b == ';' || b == ' ' || b == '\t') {
+                    state = State.EXTENSION;
+                } else if (b == '\n') {
+                    endSizeLine();
+                } else if (b != '\r') {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                break;
+            }
+            case EXTENSION: {
+                if (b == '\n') {
+                    endSizeLine();
+                }
+                break;
+            }
+            case DATA_END: {
+                if (b == '\n') {
+                    lineLength = 0;
+                    state = State.SIZE;
+                } else if (b != '\r') {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                break;
+            }
+            case TRAILER: {
+                // Trailer fields are read and dropped, an empty line ends the body
+                if (b == '\n') {
+                    if (!lineHasContent) {
+                        state = State.DONE;
+                    }
+                    lineLength = 0;
+                    lineHasContent = false;
+                } else if (b != '\r') {
+                    lineHasContent = true;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void endSizeLine() {
+        if (!sizeSeen) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (decoded + remaining > maxLength) {
+            throw new HttpParseException(413, "Payload Too Large");
+        }
+
+        lineLength = 0;
+        sizeSeen = false;
+        state = remaining == 0 ? State.TRAILER : State.DATA;
+    }
+}
@@ -0,0 +1,92 @@
+package infrastructure.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inclusive byte range of a representation, parsed from a {@code Range}
+ * header such as {@code bytes=0-99,200-,-500}.
+ */
+public class ByteRange {
+    // More ranges than this are served as a full response rather than a huge multipart body
+    private static final int MAX_RANGES = 16;
+    private static final String UNIT = "bytes=";
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the satisfiable ranges for a representation of the given length,
+     * an empty list if none is satisfiable (416) or null if the header is
+     * malformed and should be ignored (200).
+     */
+    public static List<ByteRange> parse(String header, long length) {
+        if (header == null || !header.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+            return null;
+        }
+
+        String[] specs = header.substring(UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            try {
+                if (dash == 0) {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+
+                long first = Long.parseLong(spec.substring(0, dash));
+                long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                if (first < length) {
+                    ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    // Value of the Content-Range header for this range
+    public String toContentRange(long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange [start=" + start + ", end=" + end + "]";
+    }
+}
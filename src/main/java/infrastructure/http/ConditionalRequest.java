@@ -0,0 +1,89 @@
+package infrastructure.http;
+
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+import domain.model.Request;
+
+/**
+ * Validators for files served over HTTP and the checks of the conditional
+ * headers that use them: If-None-Match, If-Modified-Since and If-Range.
+ */
+public class ConditionalRequest {
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private ConditionalRequest() {
+    }
+
+    // Strong validator built from the size and modification time, so it changes whenever the file does
+    public static String entityTag(long size, FileTime lastModified) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified.toMillis()) + "\"";
+    }
+
+    public static String httpDate(FileTime time) {
+        return HTTP_DATE.format(ZonedDateTime.ofInstant(time.toInstant(), ZoneOffset.UTC));
+    }
+
+    /**
+     * Whether a GET can be answered with 304. If-None-Match takes precedence,
+     * If-Modified-Since is only looked at when it is absent.
+     */
+    public static boolean isNotModified(Request request, String entityTag, FileTime lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesAny(ifNoneMatch, entityTag);
+        }
+
+        Instant since = parseDate(request.getHeader("If-Modified-Since"));
+        return since != null && !lastModified.toInstant().truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+
+    // Whether the Range header applies: If-Range must name the current representation
+    public static boolean isRangeApplicable(Request request, String entityTag, FileTime lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(entityTag);
+        }
+
+        Instant date = parseDate(ifRange);
+        return date != null && lastModified.toInstant().truncatedTo(ChronoUnit.SECONDS).equals(date);
+    }
+
+    // Weak comparison, as If-None-Match requires
+    private static boolean matchesAny(String header, String entityTag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Instant parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
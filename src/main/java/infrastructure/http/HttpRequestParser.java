@@ -0,0 +1,412 @@
+package infrastructure.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import enums.RequestMethod;
+import infrastructure.http.exceptions.HttpParseException;
+
+/**
+ * Incremental HTTP/1.1 request parser working directly on the bytes of a
+ * connection's read buffer. It keeps its progress between calls, so a request
+ * split over several reads is scanned only once.
+ *
+ * <p>Parsed requests do not copy the head or body: they hold offsets into the
+ * buffer array and decode fields on first access. The caller must not compact
+ * or reuse the buffer until it is done with the requests it returned, and can
+ * then {@link #recycle} them.
+ */
+public class HttpRequestParser {
+    public static final String HTTP_1_1 = "HTTP/1.1";
+    public static final String HTTP_1_0 = "HTTP/1.0";
+
+    public static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+    // Enough for a full batch of pipelined requests
+    private static final int MAX_RECYCLED = 32;
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EXPECT = "expect".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNKED = "chunked".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTINUE = "100-continue".getBytes(StandardCharsets.US_ASCII);
+
+    private enum State {
+        REQUEST_LINE,
+        HEADERS,
+        BODY
+    }
+
+    private final int maxHeaderCount;
+    private final int maxHeaderSize;
+    private final int maxBodySize;
+    private final long maxStreamedBodySize;
+    // Answered requests handed back by the connection, reused for the next ones parsed
+    private final ArrayDeque<Request> recycled = new ArrayDeque<>();
+
+    // Every offset below is relative to the start of the current request so it
+    // survives the caller compacting the buffer between reads
+    private State state = State.REQUEST_LINE;
+    private int cursor;
+    private RequestMethod method;
+    private String version;
+    private int pathStart;
+    private int pathEnd;
+    private int[] headerOffsets = new int[16 * 4];
+    private int headerCount;
+    private int headLength;
+    private int contentLength;
+    private BodyDecoder streamedBody;
+
+    public HttpRequestParser(int maxHeaderCount, int maxHeaderSize, int maxBodySize, long maxStreamedBodySize) {
+        this.maxHeaderCount = maxHeaderCount;
+        this.maxHeaderSize = maxHeaderSize;
+        this.maxBodySize = maxBodySize;
+        this.maxStreamedBodySize = maxStreamedBodySize;
+    }
+
+    public HttpRequestParser(Configuration configuration) {
+        this(configuration.getMaxHeaderCount(), configuration.getMaxHeaderSize(), configuration.getMaxBodySize(),
+                configuration.getMaxStreamedBodySize());
+    }
+
+    public static ByteBuffer allocateBuffer() {
+        return ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Parses the next request from a heap buffer in read mode. Returns null when
+     * more bytes are needed, leaving the partial request in the buffer; otherwise
+     * advances the buffer past the request. For a request whose body is streamed
+     * the buffer is left at the start of the body, see {@link #takeStreamedBody}.
+     */
+    public Request parse(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        int base = buffer.arrayOffset() + buffer.position();
+        int end = buffer.arrayOffset() + buffer.limit();
+
+        while (true) {
+            switch (state) {
+                case REQUEST_LINE: {
+                    int lineEnd = indexOfLineEnd(bytes, base + cursor, end);
+                    if (lineEnd < 0) {
+                        cursor = end - base;
+                        checkHeadSize(cursor, 414, "URI Too Long");
+                        return null;
+                    }
+
+                    int lineStart = base;
+                    if (lineEnd == lineStart || (lineEnd == lineStart + 1 && bytes[lineStart] == '\r')) {
+                        // Tolerate empty lines left over before a request line
+                        buffer.position(lineEnd + 1 - buffer.arrayOffset());
+                        base = lineEnd + 1;
+                        cursor = 0;
+                        continue;
+                    }
+
+                    checkHeadSize(lineEnd - base, 414, "URI Too Long");
+                    parseRequestLine(bytes, base, lineStart, trimLineEnd(bytes, lineStart, lineEnd));
+                    cursor = lineEnd + 1 - base;
+                    state = State.HEADERS;
+                    break;
+                }
+                case HEADERS: {
+                    int lineStart = base + cursor;
+                    int lineEnd = indexOfLineEnd(bytes, lineStart, end);
+                    if (lineEnd < 0) {
+                        checkHeadSize(end - base, 431, "Request Header Fields Too Large");
+                        return null;
+                    }
+
+                    checkHeadSize(lineEnd - base, 431, "Request Header Fields Too Large");
+                    int contentEnd = trimLineEnd(bytes, lineStart, lineEnd);
+                    cursor = lineEnd + 1 - base;
+                    if (contentEnd == lineStart) {
+                        headLength = cursor;
+                        resolveBody(bytes, base);
+                        state = State.BODY;
+                        break;
+                    }
+
+                    parseHeaderLine(bytes, base, lineStart, contentEnd);
+                    break;
+                }
+                case BODY: {
+                    if (end - base < headLength + contentLength) {
+                        return null;
+                    }
+
+                    Request request = buildRequest(bytes, base);
+                    buffer.position(buffer.position() + headLength + contentLength);
+                    reset();
+                    return request;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decoder for the body of the request parse just returned when it is too
+     * large to buffer, chunked or only sent after 100 Continue, otherwise null.
+     * The caller must read the body through it from the buffer before parsing
+     * the next request.
+     */
+    public BodyDecoder takeStreamedBody() {
+        BodyDecoder body = streamedBody;
+        streamedBody = null;
+        return body;
+    }
+
+    // Whether bytes left in the buffer by parse are part of a request head rather than a body
+    public boolean isReadingHead() {
+        return state != State.BODY;
+    }
+
+    /**
+     * Returns a buffer in write mode with room for the rest of the pending
+     * request, growing it if needed. Expects the buffer as left by compact().
+     */
+    public ByteBuffer ensureCapacity(ByteBuffer buffer) {
+        int required = state == State.BODY ? headLength + contentLength : buffer.position() + 1;
+        if (buffer.hasRemaining() && buffer.capacity() >= required) {
+            return buffer;
+        }
+
+        int limit = maxHeaderSize + maxBodySize;
+        ByteBuffer grown = ByteBuffer.allocate(Math.min(Math.max(buffer.capacity() * 2, required), limit));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+    public void reset() {
+        state = State.REQUEST_LINE;
+        cursor = 0;
+        method = null;
+        version = null;
+        headerCount = 0;
+        headLength = 0;
+        contentLength = 0;
+    }
+
+    private void parseRequestLine(byte[] bytes, int base, int start, int end) {
+        int firstSpace = indexOf(bytes, start, end, (byte) ' ');
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(bytes, firstSpace + 1, end, (byte) ' ');
+        if (firstSpace <= start || secondSpace <= firstSpace + 1) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        method = matchMethod(bytes, start, firstSpace);
+        if (method == null) {
+            throw new HttpParseException(501, "Not Implemented");
+        }
+
+        pathStart = firstSpace + 1 - base;
+        pathEnd = secondSpace - base;
+        version = matchVersion(bytes, secondSpace + 1, end);
+    }
+
+    private void parseHeaderLine(byte[] bytes, int base, int start, int end) {
+        if (bytes[start] == ' ' || bytes[start] == '\t') {
+            // Obsolete line folding is rejected as RFC 9112 allows
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        int colon = indexOf(bytes, start, end, (byte) ':');
+        if (colon <= start || bytes[colon - 1] == ' ' || bytes[colon - 1] == '\t') {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        if (headerCount == maxHeaderCount) {
+            throw new HttpParseException(431, "Request Header Fields Too Large");
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < end && (bytes[valueStart] == ' ' || bytes[valueStart] == '\t')) {
+            valueStart++;
+        }
+        int valueEnd = end;
+        while (valueEnd > valueStart && (bytes[valueEnd - 1] == ' ' || bytes[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+
+        int offset = headerCount * 4;
+        if (offset == headerOffsets.length) {
+            headerOffsets = Arrays.copyOf(headerOffsets, headerOffsets.length * 2);
+        }
+        headerOffsets[offset] = start - base;
+        headerOffsets[offset + 1] = colon - base;
+        headerOffsets[offset + 2] = valueStart - base;
+        headerOffsets[offset + 3] = valueEnd - base;
+        headerCount++;
+    }
+
+    private void resolveBody(byte[] bytes, int base) {
+        long length = -1;
+        boolean chunked = false;
+        boolean expectContinue = false;
+        for (int i = 0; i < headerCount; i++) {
+            int offset = i * 4;
+            int nameStart = base + headerOffsets[offset];
+            int nameEnd = base + headerOffsets[offset + 1];
+            int valueStart = base + headerOffsets[offset + 2];
+            int valueEnd = base + headerOffsets[offset + 3];
+
+            if (equalsIgnoreCase(bytes, nameStart, nameEnd, TRANSFER_ENCODING)) {
+                // Only chunked is supported as a transfer coding
+                if (chunked || !equalsIgnoreCase(bytes, valueStart, valueEnd, CHUNKED)) {
+                    throw new HttpParseException(501, "Not Implemented");
+                }
+                chunked = true;
+            } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, CONTENT_LENGTH)) {
+                long value = parseLength(bytes, valueStart, valueEnd);
+                if (length >= 0 && length != value) {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                length = value;
+            } else if (equalsIgnoreCase(bytes, nameStart, nameEnd, EXPECT)) {
+                expectContinue = equalsIgnoreCase(bytes, valueStart, valueEnd, CONTINUE);
+            }
+        }
+
+        // Both framings at once is how request smuggling starts
+        if (chunked && length >= 0) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (length > maxStreamedBodySize) {
+            throw new HttpParseException(413, "Payload Too Large");
+        }
+
+        contentLength = 0;
+        streamedBody = null;
+        if (chunked) {
+            streamedBody = BodyDecoder.chunked(maxStreamedBodySize);
+        } else if (length > maxBodySize || (length > 0 && expectContinue && HTTP_1_1.equals(version))) {
+            // The client holds back a body it sent Expect for, so buffering it would wait on the timeout
+            streamedBody = BodyDecoder.fixed(length);
+        } else if (length > 0) {
+            contentLength = (int) length;
+        }
+    }
+
+    private Request buildRequest(byte[] bytes, int base) {
+        Request request = recycled.poll();
+        if (request == null) {
+            return new Request(bytes, base, method, version, pathStart, pathEnd, headerOffsets, headerCount,
+                    headLength, contentLength);
+        }
+        request.wrap(bytes, base, method, version, pathStart, pathEnd, headerOffsets, headerCount, headLength,
+                contentLength);
+        return request;
+    }
+
+    /**
+     * Takes back a request this parser returned once it has been answered, to
+     * be filled in again by a later parse. Nothing may use it afterwards.
+     */
+    public void recycle(Request request) {
+        request.clear();
+        if (recycled.size() < MAX_RECYCLED) {
+            recycled.push(request);
+        }
+    }
+
+    private void checkHeadSize(int size, int statusCode, String statusMessage) {
+        if (size > maxHeaderSize) {
+            throw new HttpParseException(statusCode, statusMessage);
+        }
+    }
+
+    private static RequestMethod matchMethod(byte[] bytes, int start, int end) {
+        for (RequestMethod candidate : METHODS) {
+            String name = candidate.name();
+            if (name.length() != end - start) {
+                continue;
+            }
+
+            boolean matches = true;
+            for (int i = 0; i < name.length() && matches; i++) {
+                matches = bytes[start + i] == name.charAt(i);
+            }
+            if (matches) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String matchVersion(byte[] bytes, int start, int end) {
+        if (end - start != HTTP_1_1.length()) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        for (int i = 0; i < "HTTP/".length(); i++) {
+            if (bytes[start + i] != HTTP_1_1.charAt(i)) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+        }
+
+        if (bytes[start + 5] == '1' && bytes[start + 6] == '.') {
+            if (bytes[start + 7] == '1') {
+                return HTTP_1_1;
+            }
+            if (bytes[start + 7] == '0') {
+                return HTTP_1_0;
+            }
+        }
+        throw new HttpParseException(505, "HTTP Version Not Supported");
+    }
+
+    private static long parseLength(byte[] bytes, int start, int end) {
+        if (start == end || end - start > 18) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, byte[] lowerCaseName) {
+        if (end - start != lowerCaseName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            int c = bytes[start + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowerCaseName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOfLineEnd(byte[] bytes, int from, int end) {
+        return indexOf(bytes, from, end, (byte) '\n');
+    }
+
+    // Accept bare LF line endings as well as CRLF
+    private static int trimLineEnd(byte[] bytes, int start, int lineEnd) {
+        return lineEnd > start && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int end, byte value) {
+        for (int i = from; i < end; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,254 @@
+package infrastructure.http;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import domain.model.HeaderMap;
+import domain.model.Response;
+import enums.HeaderName;
+
+/**
+ * Writes responses as bytes, straight into the caller's buffer. Common status
+ * lines and header names are encoded once up front, while numbers and String
+ * bodies are encoded char by char, so a typical response is serialized
+ * without allocating.
+ */
+public class ResponseSerializer {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final String VERSION = "HTTP/1.1";
+    private static final byte[][] STATUS_LINES = new byte[600][];
+    private static final String[] REASON_PHRASES = new String[600];
+    // "Name: " of each well-known header, by ordinal
+    private static final byte[][] HEADER_NAMES = new byte[HeaderName.values().length][];
+    private static final byte[] CHUNKED = "Transfer-Encoding: chunked\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    static {
+        status(100, "Continue");
+        status(101, "Switching Protocols");
+        status(200, "OK");
+        status(201, "Created");
+        status(202, "Accepted");
+        status(204, "No Content");
+        status(206, "Partial Content");
+        status(301, "Moved Permanently");
+        status(302, "Found");
+        status(303, "See Other");
+        status(304, "Not Modified");
+        status(307, "Temporary Redirect");
+        status(308, "Permanent Redirect");
+        status(400, "Bad Request");
+        status(401, "Unauthorized");
+        status(403, "Forbidden");
+        status(404, "Not Found");
+        status(405, "Method Not Allowed");
+        status(406, "Not Acceptable");
+        status(408, "Request Timeout");
+        status(409, "Conflict");
+        status(411, "Length Required");
+        status(412, "Precondition Failed");
+        status(413, "Payload Too Large");
+        status(414, "URI Too Long");
+        status(415, "Unsupported Media Type");
+        status(416, "Range Not Satisfiable");
+        status(417, "Expectation Failed");
+        status(429, "Too Many Requests");
+        status(431, "Request Header Fields Too Large");
+        status(500, "Internal Server Error");
+        status(501, "Not Implemented");
+        status(502, "Bad Gateway");
+        status(503, "Service Unavailable");
+        status(504, "Gateway Timeout");
+        status(505, "HTTP Version Not Supported");
+
+        for (HeaderName name : HeaderName.values()) {
+            HEADER_NAMES[name.ordinal()] = (name.getValue() + ": ").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static void status(int code, String reason) {
+        REASON_PHRASES[code] = reason;
+        STATUS_LINES[code] = (VERSION + " " + code + " " + reason + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private ResponseSerializer() {
+    }
+
+    /**
+     * Length in bytes of the byte or String body, 0 when the response has none
+     * or its body is sent from a file or a stream after the head.
+     */
+    public static int bodyLength(Response response) {
+        if (hasByteBody(response)) {
+            return response.getByteBody().length;
+        }
+        return hasStringBody(response) ? utf8Length(response.getBody()) : 0;
+    }
+
+    // Copies the byte or String body to the position of target, which must have bodyLength(response) bytes left
+    public static void writeBody(Response response, ByteBuffer target) {
+        if (hasByteBody(response)) {
+            target.put(response.getByteBody());
+        } else if (hasStringBody(response)) {
+            writeUtf8(response.getBody(), target);
+        }
+    }
+
+    // The byte or String body in a buffer of its own, or null when it has none
+    public static ByteBuffer body(Response response) {
+        if (hasByteBody(response)) {
+            return ByteBuffer.wrap(response.getByteBody());
+        }
+        if (hasStringBody(response)) {
+            return ByteBuffer.wrap(response.getBody().getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+    }
+
+    private static boolean hasByteBody(Response response) {
+        return response.getByteBody() != null && response.getByteBody().length > 0;
+    }
+
+    private static boolean hasStringBody(Response response) {
+        return !response.hasFileBody() && !response.hasStreamingBody() && response.getBody() != null
+                && !response.getBody().isEmpty();
+    }
+
+    /**
+     * Writes the head at the position of {@code target}. Returns false and
+     * leaves the buffer as it was when the head does not fit.
+     */
+    public static boolean writeHead(Response response, int bodyLength, ByteBuffer target) {
+        int start = target.position();
+        try {
+            writeHeadTo(response, bodyLength, target);
+            return true;
+        } catch (BufferOverflowException e) {
+            target.position(start);
+            return false;
+        }
+    }
+
+    // The head in a heap buffer of its own, in read mode
+    public static ByteBuffer head(Response response, int bodyLength) {
+        for (int size = BUFFER_SIZE;; size *= 2) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            if (writeHead(response, bodyLength, buffer)) {
+                return buffer.flip();
+            }
+        }
+    }
+
+    private static void writeHeadTo(Response response, int bodyLength, ByteBuffer target) {
+        writeStatusLine(response, target);
+
+        // A String body is measured here, handlers count chars where the wire carries UTF-8 bytes
+        boolean stringBody = hasStringBody(response);
+        boolean hasContentLength = false;
+        HeaderMap headers = response.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            HeaderName name = headers.knownNameAt(i);
+            if (name == HeaderName.CONTENT_LENGTH && stringBody) {
+                continue;
+            }
+            if (name != null) {
+                target.put(HEADER_NAMES[name.ordinal()]);
+            } else {
+                writeUtf8(headers.nameAt(i), target);
+                target.put((byte) ':').put((byte) ' ');
+            }
+            writeUtf8(String.valueOf(headers.valueAt(i)), target);
+            target.put(CRLF);
+            hasContentLength |= name == HeaderName.CONTENT_LENGTH;
+        }
+
+        if (response.hasStreamingBody()) {
+            // Length is unknown, the body ends with the last chunk or when the connection closes
+            if (response.isChunked()) {
+                target.put(CHUNKED);
+            }
+        } else if (!hasContentLength && response.getStatusCode() != 304) {
+            target.put(HEADER_NAMES[HeaderName.CONTENT_LENGTH.ordinal()]);
+            writeNumber(response.hasFileBody() ? response.getFileBodyLength() : bodyLength, target);
+            target.put(CRLF);
+        }
+        target.put(CRLF);
+    }
+
+    private static void writeStatusLine(Response response, ByteBuffer target) {
+        int code = response.getStatusCode();
+        if (code >= 0 && code < STATUS_LINES.length && STATUS_LINES[code] != null
+                && VERSION.equals(response.getVersion()) && REASON_PHRASES[code].equals(response.getStatusMessage())) {
+            target.put(STATUS_LINES[code]);
+            return;
+        }
+
+        writeUtf8(response.getVersion(), target);
+        target.put((byte) ' ');
+        writeNumber(code, target);
+        target.put((byte) ' ');
+        writeUtf8(String.valueOf(response.getStatusMessage()), target);
+        target.put(CRLF);
+    }
+
+    // Same bytes as String.getBytes(UTF_8), which replaces unpaired surrogates with '?'
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeUtf8(String text, ByteBuffer target) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                target.put((byte) (0xf0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3f))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3f))
+                        .put((byte) (0x80 | codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                target.put((byte) '?');
+            } else {
+                target.put((byte) (0xe0 | c >> 12))
+                        .put((byte) (0x80 | c >> 6 & 0x3f))
+                        .put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+
+    private static void writeNumber(long value, ByteBuffer target) {
+        if (value < 0) {
+            target.put((byte) '-');
+            value = -value;
+        }
+
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            target.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package infrastructure.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A content coding the server can apply to response bodies. Besides the
+ * built-in gzip and deflate encoders, implementations listed in
+ * {@code META-INF/services/infrastructure.http.compression.ContentEncoder}
+ * are picked up with ServiceLoader, and replace a built-in one of the same
+ * name.
+ */
+public interface ContentEncoder {
+    // Token used in Accept-Encoding and Content-Encoding, such as "gzip"
+    String getName();
+
+    byte[] encode(byte[] body) throws IOException;
+
+    // Whether wrap is implemented, streaming responses only use encoders that support it
+    default boolean isStreamable() {
+        return false;
+    }
+
+    /**
+     * Returns a stream that encodes what is written to it into {@code out}.
+     * Flushing it must push out everything written so far, and closing it
+     * finishes the encoding and closes {@code out}.
+     */
+    default OutputStream wrap(OutputStream out) throws IOException {
+        throw new UnsupportedOperationException(getName() + " does not support streaming");
+    }
+}
@@ -0,0 +1,56 @@
+package infrastructure.http.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import enums.HttpEncoding;
+
+/**
+ * The deflate content coding, a zlib stream as RFC 9110 defines it.
+ */
+public class DeflateEncoder implements ContentEncoder {
+    private final DeflaterPool pool;
+
+    public DeflateEncoder(DeflaterPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return HttpEncoding.DEFLATE.getValue();
+    }
+
+    @Override
+    public byte[] encode(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        Deflater deflater = pool.borrow();
+        try {
+            deflate(deflater, body, out);
+        } finally {
+            pool.release(deflater);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
+    @Override
+    public OutputStream wrap(OutputStream out) {
+        return new PooledDeflaterOutputStream(out, pool);
+    }
+
+    // Compresses the whole body with the given Deflater, which is left finished
+    static void deflate(Deflater deflater, byte[] body, ByteArrayOutputStream out) {
+        byte[] chunk = new byte[Math.min(Math.max(body.length, 64), 16 * 1024)];
+        deflater.setInput(body);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            out.write(chunk, 0, length);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package infrastructure.http.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of Deflaters with the same settings. Each Deflater holds
+ * native zlib memory, so they are reset and reused instead of being created
+ * per response and left to the cleaner.
+ */
+public class DeflaterPool {
+    private final int level;
+    private final boolean nowrap;
+    private final BlockingQueue<Deflater> idle;
+
+    public DeflaterPool(int level, boolean nowrap, int capacity) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    public Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            // Pool is full, free the native memory now
+            deflater.end();
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+}
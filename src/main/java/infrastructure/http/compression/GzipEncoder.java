@@ -0,0 +1,89 @@
+package infrastructure.http.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import enums.HttpEncoding;
+
+/**
+ * The gzip content coding. The framing is written here around a raw deflate
+ * stream because GZIPOutputStream cannot use a pooled Deflater.
+ */
+public class GzipEncoder implements ContentEncoder {
+    // Magic number, deflate method, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final DeflaterPool pool;
+
+    // The pool must hold raw (nowrap) Deflaters
+    public GzipEncoder(DeflaterPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return HttpEncoding.GZIP.getValue();
+    }
+
+    @Override
+    public byte[] encode(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        out.write(HEADER, 0, HEADER.length);
+
+        Deflater deflater = pool.borrow();
+        try {
+            DeflateEncoder.deflate(deflater, body, out);
+        } finally {
+            pool.release(deflater);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, body.length);
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
+    @Override
+    public OutputStream wrap(OutputStream out) throws IOException {
+        out.write(HEADER);
+        CRC32 crc = new CRC32();
+        return new PooledDeflaterOutputStream(out, pool) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                super.write(bytes, offset, length);
+                crc.update(bytes, offset, length);
+            }
+
+            @Override
+            protected void writeTrailer(OutputStream target) throws IOException {
+                byte[] trailer = new byte[8];
+                writeIntLE(trailer, 0, (int) crc.getValue());
+                writeIntLE(trailer, 4, (int) def.getBytesRead());
+                target.write(trailer);
+            }
+        };
+    }
+
+    private static void writeIntLE(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+        target[offset + 2] = (byte) (value >>> 16);
+        target[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -0,0 +1,45 @@
+package infrastructure.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * DeflaterOutputStream over a Deflater borrowed from a pool, which is given
+ * back on close. Flushes use SYNC_FLUSH so a streamed body reaches the client
+ * as it is produced.
+ */
+class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    private final DeflaterPool pool;
+    private boolean closed = false;
+
+    PooledDeflaterOutputStream(OutputStream out, DeflaterPool pool) {
+        super(out, pool.borrow(), 8 * 1024, true);
+        this.pool = pool;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!def.finished()) {
+            super.finish();
+            writeTrailer(out);
+        }
+    }
+
+    // Bytes that follow the deflate stream, written once when it is finished
+    protected void writeTrailer(OutputStream target) throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            pool.release(def);
+        }
+    }
+}
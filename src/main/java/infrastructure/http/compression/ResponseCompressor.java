@@ -0,0 +1,262 @@
+package infrastructure.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import domain.model.Response;
+import domain.model.StreamingBody;
+import infrastructure.http.AcceptEncoding;
+
+/**
+ * Compresses response bodies with the encoding negotiated from
+ * Accept-Encoding. Bodies under the minimum size are left alone, and the
+ * compressed variants of recent bodies are kept so repeated responses are
+ * only compressed once.
+ */
+public class ResponseCompressor {
+    private static final Logger logger = LogManager.getLogger(ResponseCompressor.class);
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of("application/json", "application/javascript",
+            "application/xml");
+
+    private final Map<String, ContentEncoder> encoders = new LinkedHashMap<>();
+    private final List<String> supported;
+    private final List<String> streamable;
+    private final int minSize;
+    private final long cacheMaxBytes;
+    // Access ordered, so iteration starts at the least recently used variant
+    private final LinkedHashMap<Key, Variant> variants = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public ResponseCompressor(Configuration configuration) {
+        this.minSize = Math.max(0, configuration.getCompressionMinSize());
+        this.cacheMaxBytes = Math.max(0, configuration.getCompressionCacheMaxBytes());
+
+        // Registration order is the order of preference when the client has no preference
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        register(new GzipEncoder(new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, poolSize)));
+        register(new DeflateEncoder(new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, poolSize)));
+        for (ContentEncoder encoder : ServiceLoader.load(ContentEncoder.class)) {
+            register(encoder);
+        }
+        this.supported = List.copyOf(encoders.keySet());
+        this.streamable = encoders.values().stream().filter(ContentEncoder::isStreamable)
+                .map(encoder -> encoder.getName().toLowerCase()).toList();
+        logger.info("Response encodings available: {}", supported);
+    }
+
+    private void register(ContentEncoder encoder) {
+        encoders.put(encoder.getName().toLowerCase(), encoder);
+    }
+
+    public List<String> getSupportedEncodings() {
+        return supported;
+    }
+
+    /**
+     * Compresses the String, byte or streaming body of the response in place if
+     * the client accepts a supported encoding. Byte bodies are only compressed
+     * when their Content-Type is text-like. Returns whether the body was encoded.
+     */
+    public boolean compress(Request request, Response response) {
+        // Already negotiated by the compression middleware of the route
+        if (response.isEncodingNegotiated()) {
+            return false;
+        }
+        if (response.hasStreamingBody()) {
+            return compressStream(request, response);
+        }
+        if (response.hasFileBody() || response.hasHeader("Content-Encoding")) {
+            return false;
+        }
+
+        byte[] body;
+        if (response.getByteBody() != null) {
+            if (!isCompressible(response.getHeaders().get("Content-Type"))) {
+                return false;
+            }
+            body = response.getByteBody();
+        } else {
+            // A char takes at most three bytes, so most small bodies are ruled out before encoding them
+            if (response.getBody() == null || response.getBody().length() * 3L < minSize) {
+                return false;
+            }
+            body = response.getBody().getBytes(StandardCharsets.UTF_8);
+        }
+        if (body.length < minSize) {
+            return false;
+        }
+
+        // Caches must keep the variants apart whatever gets chosen for this client
+        varyOnEncoding(response);
+        String encoding = AcceptEncoding.negotiate(request.getHeader("Accept-Encoding"), supported);
+        if (encoding == null) {
+            return false;
+        }
+
+        try {
+            response.encodeBody(encoding, encode(encoders.get(encoding), body));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error applying encoding {}: {}", encoding, e.getMessage());
+            return false;
+        }
+    }
+
+    // Puts an encoder stage in front of a streaming body, its size is unknown so there is no minimum
+    private boolean compressStream(Request request, Response response) {
+        if (response.hasHeader("Content-Encoding")) {
+            return false;
+        }
+
+        varyOnEncoding(response);
+        String encoding = AcceptEncoding.negotiate(request.getHeader("Accept-Encoding"), streamable);
+        if (encoding == null) {
+            return false;
+        }
+
+        ContentEncoder encoder = encoders.get(encoding);
+        StreamingBody body = response.getStreamingBody();
+        response.setStreamingBody(output -> {
+            // Not closed on failure, the terminating chunk would make a truncated body look complete
+            OutputStream encoded = encoder.wrap(output);
+            body.writeTo(encoded);
+            encoded.close();
+        });
+        response.getHeaders().remove("Content-Length");
+        response.addHeader("Content-Encoding", encoding);
+        return true;
+    }
+
+    private static void varyOnEncoding(Response response) {
+        response.setEncodingNegotiated(true);
+        // Handlers that pick a pre-encoded variant themselves may have said so already
+        if (!response.getHeaders().contains("Vary", "Accept-Encoding")) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    // Text and the structured formats built on it, media types that are already compressed gain nothing
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        String type = (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase();
+        return type.startsWith("text/") || type.endsWith("+json") || type.endsWith("+xml")
+                || COMPRESSIBLE_TYPES.contains(type);
+    }
+
+    private byte[] encode(ContentEncoder encoder, byte[] body) throws IOException {
+        if (cacheMaxBytes == 0) {
+            return encoder.encode(body);
+        }
+
+        Key key = new Key(encoder.getName(), body);
+        synchronized (variants) {
+            Variant variant = variants.get(key);
+            if (variant != null && Arrays.equals(variant.body, body)) {
+                cacheHits.increment();
+                return variant.encoded;
+            }
+        }
+
+        cacheMisses.increment();
+        byte[] encoded = encoder.encode(body);
+        long size = body.length + encoded.length;
+        // A single body may take at most an eighth of the budget
+        if (size <= cacheMaxBytes / 8) {
+            synchronized (variants) {
+                Variant previous = variants.put(key, new Variant(body, encoded));
+                cachedBytes += size - (previous != null ? previous.size() : 0);
+                Iterator<Variant> oldest = variants.values().iterator();
+                while (cachedBytes > cacheMaxBytes && oldest.hasNext()) {
+                    cachedBytes -= oldest.next().size();
+                    oldest.remove();
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes a body that is kept by the caller, like a cached file, outside
+     * the cache of variants. Returns null when the body is under the minimum
+     * size, the encoding is unknown or the result would not be smaller.
+     */
+    public byte[] precompress(String encoding, byte[] body) {
+        ContentEncoder encoder = encoders.get(encoding.toLowerCase());
+        if (encoder == null || body.length < minSize) {
+            return null;
+        }
+        try {
+            byte[] encoded = encoder.encode(body);
+            return encoded.length < body.length ? encoded : null;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Error applying encoding {}: {}", encoding, e.getMessage());
+            return null;
+        }
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    // Content hash of the body, collisions are resolved by comparing the bodies
+    private static final class Key {
+        private final String encoding;
+        private final int length;
+        private final int hash;
+
+        private Key(String encoding, byte[] body) {
+            this.encoding = encoding;
+            this.length = body.length;
+            this.hash = Arrays.hashCode(body);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.encoding.equals(encoding) && key.length == length && key.hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * encoding.hashCode() + length) + hash;
+        }
+    }
+
+    private static final class Variant {
+        private final byte[] body;
+        private final byte[] encoded;
+
+        private Variant(byte[] body, byte[] encoded) {
+            this.body = body;
+            this.encoded = encoded;
+        }
+
+        private long size() {
+            return body.length + encoded.length;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package infrastructure.http.exceptions;
+
+import domain.model.Response;
+
+/**
+ * Malformed or over-limit request, carrying the status to answer it with.
+ */
+public class HttpParseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final String statusMessage;
+
+    public HttpParseException(int statusCode, String statusMessage) {
+        super(statusCode + " " + statusMessage);
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    public Response toResponse() {
+        return new Response.Builder()
+                .statusCode(statusCode)
+                .statusMessage(statusMessage)
+                .contentType("text/plain")
+                .addHeader("Connection", "close")
+                .body(statusMessage)
+                .build();
+    }
+}
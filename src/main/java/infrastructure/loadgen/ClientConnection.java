@@ -0,0 +1,195 @@
+package infrastructure.loadgen;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One keep-alive connection of the load generator, driven by its worker's
+ * selector. Requests are queued with the time they were meant to be sent and
+ * answered in the same order, so the head of the queue is the request each
+ * response belongs to. Responses are framed by Content-Length, which every
+ * route the generator uses sends.
+ */
+class ClientConnection {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION_CLOSE = "connection: close".getBytes(StandardCharsets.US_ASCII);
+
+    // Told about every answered request
+    interface Listener {
+        void onResponse(long sentAt, int status);
+    }
+
+    private final InetSocketAddress address;
+    private final Selector selector;
+    private final Listener listener;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // Intended send times of the requests written and not answered yet
+    private final LongQueue outstanding = new LongQueue();
+    private SocketChannel channel;
+    private SelectionKey key;
+    // Body bytes of the response being read still to come, -1 while reading its head
+    private long bodyRemaining = -1;
+    private int status;
+    private boolean closeAfterResponse;
+
+    ClientConnection(InetSocketAddress address, Selector selector, Listener listener) {
+        this.address = address;
+        this.selector = selector;
+        this.listener = listener;
+    }
+
+    void connect() throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+        writeBuffer.clear();
+        readBuffer.clear();
+        bodyRemaining = -1;
+        closeAfterResponse = false;
+    }
+
+    // Hands the unanswered requests back to be sent again and opens a new connection
+    void reconnect(LongQueue pending) throws IOException {
+        close();
+        outstanding.drainToFront(pending);
+        connect();
+    }
+
+    void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+
+    int getOutstanding() {
+        return outstanding.size();
+    }
+
+    LongQueue getOutstandingQueue() {
+        return outstanding;
+    }
+
+    // Adds the request to the bytes to write, flush() sends them
+    boolean queue(byte[] request, long sentAt) {
+        if (writeBuffer.remaining() < request.length) {
+            return false;
+        }
+        writeBuffer.put(request);
+        outstanding.add(sentAt);
+        return true;
+    }
+
+    void flush() throws IOException {
+        writeBuffer.flip();
+        try {
+            channel.write(writeBuffer);
+        } finally {
+            writeBuffer.compact();
+        }
+        // Wait for the socket to drain before writing the rest
+        key.interestOps(writeBuffer.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Reads what has arrived and reports every complete response. Returns
+     * false when the connection has to be opened again: the server closed it
+     * or said it would.
+     */
+    boolean onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            return false;
+        }
+        readBuffer.flip();
+        try {
+            while (readBuffer.hasRemaining()) {
+                if (bodyRemaining < 0 && !readHead()) {
+                    break;
+                }
+                long skipped = Math.min(bodyRemaining, readBuffer.remaining());
+                readBuffer.position(readBuffer.position() + (int) skipped);
+                bodyRemaining -= skipped;
+                if (bodyRemaining > 0) {
+                    break;
+                }
+                if (!complete()) {
+                    return false;
+                }
+            }
+        } finally {
+            readBuffer.compact();
+        }
+        return true;
+    }
+
+    // Whether the head of the next response is in, it is consumed when it is
+    private boolean readHead() throws IOException {
+        byte[] bytes = readBuffer.array();
+        int start = readBuffer.position();
+        int end = -1;
+        for (int i = start + 3; i < readBuffer.limit(); i++) {
+            if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                end = i + 1;
+                break;
+            }
+        }
+        if (end < 0) {
+            if (start == 0 && readBuffer.limit() == readBuffer.capacity()) {
+                throw new IOException("Response head larger than " + BUFFER_SIZE + " bytes");
+            }
+            return false;
+        }
+
+        // HTTP/1.1 200 OK
+        status = (bytes[start + 9] - '0') * 100 + (bytes[start + 10] - '0') * 10 + (bytes[start + 11] - '0');
+        int lengthAt = indexOfIgnoreCase(bytes, start, end, CONTENT_LENGTH);
+        long length = 0;
+        if (lengthAt >= 0) {
+            for (int i = lengthAt + CONTENT_LENGTH.length; i < end && bytes[i] != '\r'; i++) {
+                if (bytes[i] >= '0' && bytes[i] <= '9') {
+                    length = length * 10 + bytes[i] - '0';
+                }
+            }
+        }
+        closeAfterResponse = indexOfIgnoreCase(bytes, start, end, CONNECTION_CLOSE) >= 0;
+        bodyRemaining = length;
+        readBuffer.position(end);
+        return true;
+    }
+
+    private boolean complete() throws IOException {
+        if (outstanding.isEmpty()) {
+            throw new IOException("Response without a request");
+        }
+        listener.onResponse(outstanding.poll(), status);
+        bodyRemaining = -1;
+        return !closeAfterResponse;
+    }
+
+    private static int indexOfIgnoreCase(byte[] bytes, int from, int to, byte[] lowerCase) {
+        for (int i = from; i + lowerCase.length <= to; i++) {
+            int j = 0;
+            while (j < lowerCase.length && (bytes[i + j] | 0x20) == (lowerCase[j] | 0x20)) {
+                j++;
+            }
+            if (j == lowerCase.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,147 @@
+package infrastructure.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of a load test, read from {@code --name value} arguments. Load is
+ * always sent to localhost.
+ */
+public class LoadOptions {
+    public enum Mode {
+        // Every connection sends its next requests as soon as answers come back
+        CLOSED,
+        // Requests are sent at a fixed rate whether or not earlier ones were answered
+        OPEN
+    }
+
+    private Mode mode = Mode.CLOSED;
+    private int port = 4221;
+    private int connections = 16;
+    // Requests each connection has on the wire at once, more than one pipelines them
+    private int pipeline = 1;
+    // Requests per second in open loop, across every connection
+    private int rate = 1000;
+    private int threads = 1;
+    private int warmupSeconds = 2;
+    private int durationSeconds = 10;
+    private List<Scenario> scenarios = List.of(Scenario.ECHO);
+    // Uploaded before the run when the files scenario is used
+    private String fileName = "load-generator.bin";
+    private int fileSize = 4096;
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i].toLowerCase();
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[i + 1];
+            switch (name) {
+                case "--mode" -> options.mode = Mode.valueOf(value.toUpperCase());
+                case "--port" -> options.port = positive(name, value);
+                case "--connections" -> options.connections = positive(name, value);
+                case "--pipeline" -> options.pipeline = positive(name, value);
+                case "--rate" -> options.rate = positive(name, value);
+                case "--threads" -> options.threads = positive(name, value);
+                case "--warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                case "--duration" -> options.durationSeconds = positive(name, value);
+                case "--scenario" -> options.scenarios = scenarios(value);
+                case "--file" -> options.fileName = value;
+                case "--file-size" -> options.fileSize = positive(name, value);
+                default -> throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        // Every thread needs a connection of its own
+        options.threads = Math.min(options.threads, options.connections);
+        return options;
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return parsed;
+    }
+
+    // Comma-separated, such as root,echo,user-agent,files
+    private static List<Scenario> scenarios(String value) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String scenario : value.split(",")) {
+            scenarios.add(Scenario.fromString(scenario.trim()));
+        }
+        return List.copyOf(scenarios);
+    }
+
+    public static String usage() {
+        return """
+                Usage: LoadGenerator [--name value]...
+                  --mode closed|open    closed: connections send as answers arrive (default)
+                                        open: fixed arrival rate, latency counted from the intended send time
+                  --port N              port of the server on localhost (4221)
+                  --connections N       keep-alive connections (16)
+                  --pipeline N          requests in flight per connection (1)
+                  --rate N              requests per second in open loop (1000)
+                  --threads N           client threads, connections are split between them (1)
+                  --warmup S            seconds of load before measuring (2)
+                  --duration S          seconds measured (10)
+                  --scenario LIST       any of root,echo,user-agent,files, sent in turn (echo)
+                  --file NAME           file uploaded and fetched by the files scenario (load-generator.bin)
+                  --file-size N         its size in bytes (4096)
+                """;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getPipeline() {
+        return pipeline;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public List<Scenario> getScenarios() {
+        return scenarios;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getFileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadOptions [mode=" + mode + ", port=" + port + ", connections=" + connections + ", pipeline="
+                + pipeline + ", rate=" + rate + ", threads=" + threads + ", warmupSeconds=" + warmupSeconds
+                + ", durationSeconds=" + durationSeconds + ", scenarios=" + scenarios + ", fileName=" + fileName
+                + ", fileSize=" + fileSize + "]";
+    }
+}
@@ -0,0 +1,81 @@
+package infrastructure.loadgen;
+
+import java.math.BigDecimal;
+
+import infrastructure.metrics.Histogram;
+
+/**
+ * What the workers of a load test measured, merged: counts of requests and
+ * failures, and the latency distribution of the requests due in the measured
+ * window.
+ */
+public class LoadReport {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999, 0.9999 };
+
+    private final LoadOptions options;
+    private final long[] latencies;
+    private long completed;
+    private long failed;
+    private long errors;
+    private long reconnects;
+    private long unanswered;
+    private long latencySum;
+    private long maxLatency;
+
+    LoadReport(LoadOptions options, LoadWorker[] workers) {
+        this.options = options;
+        this.latencies = new long[workers[0].getLatencies().snapshot().length];
+        for (LoadWorker worker : workers) {
+            long[] snapshot = worker.getLatencies().snapshot();
+            for (int i = 0; i < snapshot.length; i++) {
+                latencies[i] += snapshot[i];
+            }
+            latencySum += worker.getLatencies().getSum();
+            completed += worker.getCompleted();
+            failed += worker.getFailed();
+            errors += worker.getErrors();
+            reconnects += worker.getReconnects();
+            unanswered += worker.getUnanswered();
+            maxLatency = Math.max(maxLatency, worker.getMaxLatency());
+        }
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    // Latency in microseconds at the quantile, between 0 and 1. Buckets give their upper bound,
+    // which for the top ones can be above anything measured
+    public long getLatency(double quantile) {
+        return Math.min(Histogram.valueAt(latencies, quantile), maxLatency);
+    }
+
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        double seconds = options.getDurationSeconds();
+        out.append(String.format("Mode:       %s loop, %d connections over %d threads, pipeline %d%s%n",
+                options.getMode().name().toLowerCase(), options.getConnections(), options.getThreads(),
+                options.getPipeline(),
+                options.getMode() == LoadOptions.Mode.OPEN ? ", " + options.getRate() + " req/s due" : ""));
+        out.append(String.format("Scenarios:  %s%n", options.getScenarios()));
+        out.append(String.format("Requests:   %d in %.0fs, %.1f req/s%n", completed, seconds, completed / seconds));
+        out.append(String.format("Failures:   %d error responses, %d unanswered, %d failed connections, %d reconnects%n",
+                errors, unanswered, failed, reconnects));
+
+        long recorded = completed + unanswered;
+        out.append(String.format("Latency:    mean %s", millis(recorded > 0 ? latencySum / recorded : 0)));
+        for (double quantile : QUANTILES) {
+            out.append(String.format(", p%s %s", percent(quantile), millis(getLatency(quantile))));
+        }
+        out.append(String.format(", max %s%n", millis(maxLatency)));
+        return out.toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3fms", micros / 1000.0);
+    }
+
+    private static String percent(double quantile) {
+        return BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,90 @@
+package infrastructure.loadgen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a load test against the server on localhost: uploads the file the
+ * files scenario fetches, splits the connections and the rate between the
+ * worker threads, and merges what they measured once the run is over.
+ */
+public class LoadTest {
+    private static final Logger logger = LogManager.getLogger(LoadTest.class);
+
+    private final LoadOptions options;
+
+    public LoadTest(LoadOptions options) {
+        this.options = options;
+    }
+
+    public LoadReport run() throws IOException {
+        List<Scenario> scenarios = options.getScenarios();
+        if (scenarios.contains(Scenario.FILES)) {
+            upload();
+        }
+        byte[][] requests = new byte[scenarios.size()][];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = scenarios.get(i).request(options.getPort(), options.getFileName());
+        }
+
+        long start = System.nanoTime();
+        long measureStart = start + options.getWarmupSeconds() * 1_000_000_000L;
+        long end = measureStart + options.getDurationSeconds() * 1_000_000_000L;
+
+        // Each thread gets an equal share of connections, and of the rate in proportion to them
+        int threads = options.getThreads();
+        LoadWorker[] workers = new LoadWorker[threads];
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int connections = options.getConnections() / threads + (i < options.getConnections() % threads ? 1 : 0);
+            double rate = (double) options.getRate() * connections / options.getConnections();
+            workers[i] = new LoadWorker(options, requests, connections, rate, start, measureStart, end);
+        }
+        logger.info("Running {} loop for {}s after {}s of warmup", options.getMode().name().toLowerCase(),
+                options.getDurationSeconds(), options.getWarmupSeconds());
+        for (int i = 0; i < threads; i++) {
+            running[i] = Thread.ofPlatform().name("Load-Worker-" + i).start(workers[i]);
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new LoadReport(options, workers);
+    }
+
+    // Puts the file the files scenario reads on the server
+    private void upload() throws IOException {
+        byte[] body = new byte[options.getFileSize()];
+        new Random(42).nextBytes(body);
+        try (Socket socket = new Socket("localhost", options.getPort())) {
+            OutputStream output = socket.getOutputStream();
+            output.write(("POST /files/" + options.getFileName() + " HTTP/1.1\r\n"
+                    + "Host: localhost:" + options.getPort() + "\r\n"
+                    + "Content-Type: application/octet-stream\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.write(body);
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            String statusLine = new String(input.readNBytes(12), StandardCharsets.US_ASCII);
+            if (!statusLine.endsWith("201")) {
+                throw new IOException("Uploading " + options.getFileName() + " failed: " + statusLine);
+            }
+        }
+        logger.info("Uploaded {} ({} bytes) for the files scenario", options.getFileName(), body.length);
+    }
+}
@@ -0,0 +1,233 @@
+package infrastructure.loadgen;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import infrastructure.metrics.Histogram;
+
+/**
+ * One client thread of a load test, driving its share of the connections
+ * from a single selector. In closed loop each connection sends its next
+ * request as soon as one is answered. In open loop requests are due at a
+ * fixed rate, and the ones no connection can take yet wait their turn with
+ * the time they were due: latency is counted from then, so a server that
+ * falls behind is not flattered by requests the generator held back.
+ */
+class LoadWorker implements Runnable, ClientConnection.Listener {
+    private static final Logger logger = LogManager.getLogger(LoadWorker.class);
+    private static final long MAX_SELECT_MILLIS = 100;
+
+    private final LoadOptions options;
+    private final byte[][] requests;
+    private final ClientConnection[] connections;
+    private final Selector selector;
+    private final long start;
+    private final long measureStart;
+    private final long end;
+    // Time between due requests in open loop, 0 in closed loop
+    private final double period;
+    private final Histogram latencies = new Histogram();
+    // Due and not sent yet, by the time they were due
+    private final LongQueue pending = new LongQueue();
+    private long nextDue;
+    private long dueCount = 0;
+    private int nextRequest = 0;
+    private int nextConnection = 0;
+
+    private long completed = 0;
+    private long failed = 0;
+    private long errors = 0;
+    private long reconnects = 0;
+    private long unanswered = 0;
+    private long maxLatency = 0;
+
+    LoadWorker(LoadOptions options, byte[][] requests, int connections, double rate, long start, long measureStart,
+            long end) throws IOException {
+        this.options = options;
+        this.requests = requests;
+        this.selector = Selector.open();
+        this.start = start;
+        this.measureStart = measureStart;
+        this.end = end;
+        this.period = options.getMode() == LoadOptions.Mode.OPEN ? 1_000_000_000d / rate : 0;
+        this.nextDue = start;
+
+        InetSocketAddress address = new InetSocketAddress("localhost", options.getPort());
+        this.connections = new ClientConnection[connections];
+        for (int i = 0; i < connections; i++) {
+            this.connections[i] = new ClientConnection(address, selector, this);
+            this.connections[i].connect();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                if (period > 0) {
+                    while (nextDue <= now) {
+                        pending.add(nextDue);
+                        dueCount++;
+                        nextDue = start + Math.round(dueCount * period);
+                    }
+                }
+                send(now);
+                select(now);
+            }
+            finish();
+        } catch (IOException e) {
+            logger.error("Load worker stopped: {}", e.getMessage());
+        } finally {
+            for (ClientConnection connection : connections) {
+                connection.close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private void send(long now) throws IOException {
+        int pipeline = options.getPipeline();
+        if (period == 0) {
+            for (ClientConnection connection : connections) {
+                fill(connection, pipeline, now);
+            }
+            return;
+        }
+
+        // Due requests go round the connections, each takes as many as its pipeline has room for
+        for (int tried = 0; tried < connections.length && !pending.isEmpty(); tried++) {
+            ClientConnection connection = connections[nextConnection];
+            nextConnection = (nextConnection + 1) % connections.length;
+            fill(connection, pipeline, now);
+        }
+    }
+
+    private void fill(ClientConnection connection, int pipeline, long now) throws IOException {
+        boolean queued = false;
+        while (connection.getOutstanding() < pipeline && (period == 0 || !pending.isEmpty())) {
+            long sentAt = pending.isEmpty() ? now : pending.poll();
+            if (!connection.queue(requests[nextRequest], sentAt)) {
+                pending.add(sentAt);
+                break;
+            }
+            nextRequest = (nextRequest + 1) % requests.length;
+            queued = true;
+        }
+        if (queued) {
+            try {
+                connection.flush();
+            } catch (IOException e) {
+                reconnect(connection, e);
+            }
+        }
+    }
+
+    private void select(long now) throws IOException {
+        // Selectors wait in whole milliseconds, so a request may go out up to one late. Spinning
+        // instead would take the CPU from a server on the same machine
+        long wait = period > 0 ? nextDue - now : MAX_SELECT_MILLIS * 1_000_000;
+        if (wait > 0) {
+            selector.select(Math.min(Math.max(1, wait / 1_000_000), MAX_SELECT_MILLIS));
+        } else {
+            selector.selectNow();
+        }
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            ClientConnection connection = (ClientConnection) key.attachment();
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+                if (key.isValid() && key.isReadable() && !connection.onReadable()) {
+                    reconnect(connection, null);
+                }
+            } catch (IOException e) {
+                reconnect(connection, e);
+            }
+        }
+    }
+
+    private void reconnect(ClientConnection connection, IOException cause) throws IOException {
+        if (cause != null) {
+            failed++;
+            logger.debug("Connection failed, reconnecting: {}", cause.getMessage());
+        }
+        reconnects++;
+        connection.reconnect(pending);
+    }
+
+    @Override
+    public void onResponse(long sentAt, int status) {
+        if (sentAt < measureStart) {
+            return;
+        }
+        record(System.nanoTime() - sentAt);
+        completed++;
+        if (status >= 400) {
+            errors++;
+        }
+    }
+
+    // Requests due in the measured window and never answered count with the time they have waited so far
+    private void finish() {
+        long now = System.nanoTime();
+        for (ClientConnection connection : connections) {
+            connection.getOutstandingQueue().drainToFront(pending);
+        }
+        while (!pending.isEmpty()) {
+            long sentAt = pending.poll();
+            if (sentAt >= measureStart) {
+                record(now - sentAt);
+                unanswered++;
+            }
+        }
+    }
+
+    private void record(long nanos) {
+        long micros = nanos / 1000;
+        latencies.record(micros);
+        maxLatency = Math.max(maxLatency, micros);
+    }
+
+    Histogram getLatencies() {
+        return latencies;
+    }
+
+    long getCompleted() {
+        return completed;
+    }
+
+    long getFailed() {
+        return failed;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    long getReconnects() {
+        return reconnects;
+    }
+
+    long getUnanswered() {
+        return unanswered;
+    }
+
+    long getMaxLatency() {
+        return maxLatency;
+    }
+}
@@ -0,0 +1,51 @@
+package infrastructure.loadgen;
+
+// FIFO of send times, a growing ring so queueing a request allocates nothing once warm
+class LongQueue {
+    private long[] values = new long[16];
+    private int head = 0;
+    private int size = 0;
+
+    void add(long value) {
+        if (size == values.length) {
+            long[] grown = new long[values.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = values[(head + i) & (values.length - 1)];
+            }
+            values = grown;
+            head = 0;
+        }
+        values[(head + size) & (values.length - 1)] = value;
+        size++;
+    }
+
+    long poll() {
+        long value = values[head];
+        head = (head + 1) & (values.length - 1);
+        size--;
+        return value;
+    }
+
+    // Moves every value to the front of target, keeping their order
+    void drainToFront(LongQueue target) {
+        while (!target.isEmpty()) {
+            add(target.poll());
+        }
+        while (!isEmpty()) {
+            target.add(poll());
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,47 @@
+package infrastructure.loadgen;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Requests the load generator sends, one per route of BaseController. A run
+ * given several scenarios sends them in turn.
+ */
+public enum Scenario {
+    ROOT("root"),
+    ECHO("echo"),
+    USER_AGENT("user-agent"),
+    FILES("files");
+
+    private final String value;
+
+    Scenario(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static Scenario fromString(String scenario) {
+        for (Scenario s : values()) {
+            if (s.value.equalsIgnoreCase(scenario)) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("No scenario named " + scenario);
+    }
+
+    // The whole request, with a Host header for the port the server listens on
+    public byte[] request(int port, String fileName) {
+        String target = switch (this) {
+            case ROOT -> "/";
+            case ECHO -> "/echo/load";
+            case USER_AGENT -> "/user-agent";
+            case FILES -> "/files/" + fileName;
+        };
+        return ("GET " + target + " HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "User-Agent: load-generator\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,296 @@
+package infrastructure.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import enums.RequestMethod;
+
+/**
+ * Access log with one line per response:
+ * {@code time connection method path status bytes latencyMicros}, with - for
+ * values that are not known. Bytes of the path outside printable ASCII, and
+ * backslashes, are written as {@code \xHH} so a request cannot break or
+ * forge lines. Request threads only copy these fields into a
+ * preallocated ring, without allocating or formatting anything. A writer
+ * thread formats them and appends them to the file in batches. When the ring
+ * is full because the writer is behind, entries are dropped and counted
+ * instead of making requests wait.
+ */
+public class AccessLog implements Closeable {
+    private static final Logger logger = LogManager.getLogger(AccessLog.class);
+    private static final int MAX_PATH_LENGTH = 256;
+    // Every path byte may be escaped to four
+    private static final int MAX_LINE_LENGTH = MAX_PATH_LENGTH * 4 + 128;
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+    private static final long DROP_REPORT_INTERVAL = 1000;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] METHOD_NAMES = new byte[RequestMethod.values().length][];
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+            .withZone(ZoneOffset.UTC);
+
+    static {
+        for (RequestMethod method : RequestMethod.values()) {
+            METHOD_NAMES[method.ordinal()] = method.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final FileChannel file;
+    private final int mask;
+    // Fields of each entry, a slot is reused once the writer is past it
+    private final long[] times;
+    private final long[] connections;
+    private final int[] statuses;
+    private final long[] bodyBytes;
+    private final long[] latencies;
+    private final byte[] methods;
+    private final byte[] paths;
+    private final int[] pathLengths;
+    // Sequence of the entry each slot holds, set once its fields are written
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence the writer formats, every slot before it is free
+    private volatile long consumed = 0;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Only touched by the writer thread
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+    private final byte[] digits = new byte[20];
+    private long currentSecond = -1;
+    private byte[] secondPrefix;
+    private long reportedDrops = 0;
+    private long lastDropReport = 0;
+
+    public AccessLog(Configuration configuration) {
+        String path = configuration.getAccessLogFile();
+        FileChannel channel = null;
+        if (path != null && !path.isBlank()) {
+            try {
+                channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.error("Failed to open access log {}: {}", path, e.getMessage());
+            }
+        }
+        this.file = channel;
+
+        // Rounded up to a power of two, a disabled log keeps a single unused slot
+        int size = channel != null ? Math.max(2, configuration.getAccessLogBufferSize()) : 1;
+        int capacity = size > 1 ? Integer.highestOneBit(size - 1) << 1 : 1;
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.connections = new long[capacity];
+        this.statuses = new int[capacity];
+        this.bodyBytes = new long[capacity];
+        this.latencies = new long[capacity];
+        this.methods = new byte[capacity];
+        this.paths = new byte[capacity * MAX_PATH_LENGTH];
+        this.pathLengths = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+
+        if (channel != null) {
+            this.writer = Thread.ofPlatform().name("Access-Log-Writer").daemon().start(this::write);
+            logger.info("Access log written to {} through a buffer of {} entries", path, capacity);
+        } else {
+            this.writer = null;
+            logger.info("Access log disabled");
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    // Entries dropped so far because the ring was full
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Records a response to the request, which may be null for responses sent
+     * without one such as parse errors. A negative byte count is unknown. Safe
+     * to call from any thread, and never blocks.
+     */
+    public void record(long connection, Request request, int status, long bytes) {
+        if (file == null) {
+            return;
+        }
+
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        times[slot] = System.currentTimeMillis();
+        connections[slot] = connection;
+        statuses[slot] = status;
+        bodyBytes[slot] = bytes;
+        if (request != null) {
+            methods[slot] = (byte) (request.getMethod() != null ? request.getMethod().ordinal() : -1);
+            pathLengths[slot] = request.copyPath(paths, slot * MAX_PATH_LENGTH, MAX_PATH_LENGTH);
+            latencies[slot] = request.getReceivedAt() != 0 ? (System.nanoTime() - request.getReceivedAt()) / 1000 : -1;
+        } else {
+            methods[slot] = -1;
+            pathLengths[slot] = 0;
+            latencies[slot] = -1;
+        }
+        // The volatile store hands the fields above to the writer
+        published.set(slot, sequence);
+    }
+
+    private void write() {
+        long next = 0;
+        while (true) {
+            // Read before draining, so entries recorded before close() are still written
+            boolean stopping = !running;
+            boolean wrote = false;
+            while (published.get((int) (next & mask)) == next) {
+                if (batch.remaining() < MAX_LINE_LENGTH) {
+                    flush();
+                }
+                format((int) (next & mask));
+                next++;
+                consumed = next;
+                wrote = true;
+            }
+            flush();
+            reportDrops();
+
+            if (stopping) {
+                return;
+            }
+            if (!wrote) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void format(int slot) {
+        long time = times[slot];
+        long second = time / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            secondPrefix = SECOND_FORMAT.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+        }
+        batch.put(secondPrefix).put((byte) '.');
+        int millis = (int) (time % 1000);
+        batch.put((byte) ('0' + millis / 100)).put((byte) ('0' + millis / 10 % 10)).put((byte) ('0' + millis % 10));
+        batch.put((byte) 'Z').put((byte) ' ');
+
+        putNumber(connections[slot]);
+        batch.put((byte) ' ');
+        if (methods[slot] >= 0) {
+            batch.put(METHOD_NAMES[methods[slot]]);
+        } else {
+            batch.put((byte) '-');
+        }
+        batch.put((byte) ' ');
+        if (pathLengths[slot] > 0) {
+            putEscaped(paths, slot * MAX_PATH_LENGTH, pathLengths[slot]);
+        } else {
+            batch.put((byte) '-');
+        }
+        batch.put((byte) ' ');
+        putNumber(statuses[slot]);
+        batch.put((byte) ' ');
+        putNumber(bodyBytes[slot]);
+        batch.put((byte) ' ');
+        putNumber(latencies[slot]);
+        batch.put((byte) '\n');
+    }
+
+    private void putEscaped(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = bytes[i] & 0xff;
+            if (b > ' ' && b < 0x7f && b != '\\') {
+                batch.put((byte) b);
+            } else {
+                batch.put((byte) '\\').put((byte) 'x').put(HEX[b >>> 4]).put(HEX[b & 0xf]);
+            }
+        }
+    }
+
+    private void putNumber(long value) {
+        if (value < 0) {
+            batch.put((byte) '-');
+            return;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        batch.put(digits, start, digits.length - start);
+    }
+
+    private void flush() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        try {
+            while (batch.hasRemaining()) {
+                file.write(batch);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write access log: {}", e.getMessage());
+        }
+        batch.clear();
+    }
+
+    private void reportDrops() {
+        long now = System.currentTimeMillis();
+        if (now - lastDropReport < DROP_REPORT_INTERVAL) {
+            return;
+        }
+        long total = dropped.sum();
+        if (total > reportedDrops) {
+            logger.warn("Access log writer fell behind, {} entries dropped", total - reportedDrops);
+            reportedDrops = total;
+        }
+        lastDropReport = now;
+    }
+
+    // Writes what is left in the ring and closes the file
+    @Override
+    public void close() throws IOException {
+        if (writer == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        file.close();
+    }
+}
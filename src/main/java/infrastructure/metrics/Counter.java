@@ -0,0 +1,26 @@
+package infrastructure.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Striped counter, updates from many threads do not contend on one field
+public class Counter implements LongSupplier {
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void decrement() {
+        value.decrement();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    @Override
+    public long getAsLong() {
+        return value.sum();
+    }
+}
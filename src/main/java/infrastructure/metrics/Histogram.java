@@ -0,0 +1,94 @@
+package infrastructure.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-bucketed histogram in the style of HdrHistogram: every power of two is
+ * split into 16 linear buckets, so any recorded value is known to within about
+ * 6%. Values from 0 to 2^40 fit, larger ones count in the last bucket.
+ * Recording is lock-free and allocates nothing.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long value) {
+        counts.incrementAndGet(index(value));
+        sum.add(Math.max(value, 0));
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) Math.max(value, 0);
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        if (highestBit >= MAX_BITS) {
+            return BUCKETS - 1;
+        }
+        int shift = highestBit - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    // Largest value that counts in the bucket
+    static long highestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    // Counts of every bucket at one moment, for exporting
+    public long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Value at the quantile, between 0 and 1, of the values in the snapshot:
+     * the largest value of the bucket it falls in, 0 when the snapshot is
+     * empty.
+     */
+    public static long valueAt(long[] snapshot, double quantile) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Number of values in the snapshot that are at most {@code bound}. Values
+     * in the bucket the bound falls inside are left out, so the count can be
+     * short by that one bucket.
+     */
+    public static long countAtMost(long[] snapshot, long bound) {
+        long count = 0;
+        for (int i = 0; i < snapshot.length && highestValue(i) <= bound; i++) {
+            count += snapshot[i];
+        }
+        return count;
+    }
+}
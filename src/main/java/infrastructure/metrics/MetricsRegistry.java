@@ -0,0 +1,139 @@
+package infrastructure.metrics;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms, written out in the Prometheus text
+ * format. Metrics of one name form a family and differ by their labels, given
+ * as name and value pairs. Registering takes a lock, recording into what it
+ * returns never does.
+ */
+public class MetricsRegistry {
+    // Histograms hold durations in microseconds, exported in seconds with these le buckets
+    private static final int MICROS_SCALE = 6;
+    private static final long[] BUCKET_BOUNDS = { 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000 };
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final class Family {
+        private final String help;
+        private final Type type;
+        // Rendered labels to a LongSupplier, or a Histogram for histograms
+        private final Map<String, Object> metrics = new LinkedHashMap<>();
+
+        private Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    // Counter owned by the registry, the same one for every call with the same name and labels
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).metrics.computeIfAbsent(labels(labels),
+                key -> new Counter());
+    }
+
+    // Counter kept elsewhere, read when the registry is written
+    public synchronized void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).metrics.put(labels(labels), value);
+    }
+
+    public synchronized void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).metrics.put(labels(labels), value);
+    }
+
+    // Histogram of durations in microseconds, the same one for every call with the same name and labels
+    public synchronized Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).metrics.computeIfAbsent(labels(labels),
+                key -> new Histogram());
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    // Prometheus text exposition format 0.0.4
+    public synchronized void writeTo(StringBuilder out) {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                if (metric.getValue() instanceof Histogram histogram) {
+                    writeHistogram(out, name, metric.getKey(), histogram);
+                } else {
+                    sample(out, name, metric.getKey(), null).append(((LongSupplier) metric.getValue()).getAsLong())
+                            .append('\n');
+                }
+            }
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        long[] snapshot = histogram.snapshot();
+        for (long bound : BUCKET_BOUNDS) {
+            String le = "le=\"" + seconds(bound) + '"';
+            sample(out, name + "_bucket", labels, le).append(Histogram.countAtMost(snapshot, bound)).append('\n');
+        }
+        long count = 0;
+        for (long bucket : snapshot) {
+            count += bucket;
+        }
+        sample(out, name + "_bucket", labels, "le=\"+Inf\"").append(count).append('\n');
+        sample(out, name + "_sum", labels, null).append(seconds(histogram.getSum())).append('\n');
+        sample(out, name + "_count", labels, null).append(count).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, MICROS_SCALE).stripTrailingZeros().toPlainString();
+    }
+
+    private static StringBuilder sample(StringBuilder out, String name, String labels, String extraLabel) {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            out.append('}');
+        }
+        return out.append(' ');
+    }
+}
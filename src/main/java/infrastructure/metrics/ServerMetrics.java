@@ -0,0 +1,154 @@
+package infrastructure.metrics;
+
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import infrastructure.api.Route;
+import infrastructure.cache.FileCache;
+import infrastructure.container.Container;
+import infrastructure.http.compression.ResponseCompressor;
+import infrastructure.logging.AccessLog;
+import infrastructure.server.BufferPool;
+
+/**
+ * Metrics of the server, shared by both engines and served at /metrics.
+ * Durations are passed in as {@link System#nanoTime()} readings and recorded
+ * in microseconds. Nothing here allocates once registered.
+ */
+public class ServerMetrics {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final Counter accepted;
+    private final Counter inFlight = new Counter();
+    private final Counter parseErrors;
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+    // By status class, 1xx to 5xx
+    private final Counter[] responses = new Counter[5];
+    private final Histogram parse;
+    private final Histogram handle;
+    private final Histogram encode;
+    private final Histogram write;
+    private final Counter filesFromCache;
+    private final Counter filesFromDisk;
+    private final Counter filesSaved;
+
+    public ServerMetrics() {
+        accepted = registry.counter("http_connections_accepted_total", "Connections accepted");
+        registry.gauge("http_requests_in_flight", "Requests being handled", inFlight);
+        parseErrors = registry.counter("http_parse_errors_total", "Requests rejected before routing");
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = registry.counter("http_responses_total", "Responses sent by status class",
+                    "status", (i + 1) + "xx");
+        }
+        bytesRead = registry.counter("http_bytes_read_total", "Bytes read from clients");
+        bytesWritten = registry.counter("http_bytes_written_total", "Bytes written to clients");
+
+        String stageHelp = "Time spent in each stage of handling requests";
+        parse = registry.histogram("http_stage_duration_seconds", stageHelp, "stage", "parse");
+        handle = registry.histogram("http_stage_duration_seconds", stageHelp, "stage", "handle");
+        encode = registry.histogram("http_stage_duration_seconds", stageHelp, "stage", "encode");
+        write = registry.histogram("http_stage_duration_seconds", stageHelp, "stage", "write");
+
+        filesFromCache = registry.counter("http_files_served_total", "Files served by where they were read from",
+                "source", "cache");
+        filesFromDisk = registry.counter("http_files_served_total", "Files served by where they were read from",
+                "source", "disk");
+        filesSaved = registry.counter("http_files_saved_total", "Files uploaded");
+
+        // Kept by the components themselves, read through the container so none is created early
+        registry.counter("http_file_cache_hits_total", "File cache lookups that found the file",
+                read(FileCache.class, FileCache::getHits));
+        registry.counter("http_file_cache_misses_total", "File cache lookups that did not find the file",
+                read(FileCache.class, FileCache::getMisses));
+        registry.counter("http_file_cache_evictions_total", "Files evicted from the file cache",
+                read(FileCache.class, FileCache::getEvictions));
+        registry.gauge("http_file_cache_bytes", "Bytes held by the file cache",
+                read(FileCache.class, FileCache::getSizeInBytes));
+        registry.counter("http_compression_cache_hits_total", "Compressed bodies served from the cache",
+                read(ResponseCompressor.class, ResponseCompressor::getCacheHits));
+        registry.counter("http_compression_cache_misses_total", "Bodies compressed for the response",
+                read(ResponseCompressor.class, ResponseCompressor::getCacheMisses));
+        registry.gauge("http_buffer_pool_direct_bytes", "Off-heap bytes allocated by the buffer pool",
+                read(BufferPool.class, BufferPool::getAllocatedBytes));
+        registry.counter("http_access_log_dropped_total", "Access log lines dropped while the writer was behind",
+                read(AccessLog.class, AccessLog::getDropped));
+    }
+
+    private static <T> LongSupplier read(Class<T> type, ToLongFunction<T> value) {
+        return () -> Container.getInstance(type).map(instance -> value.applyAsLong(instance)).orElse(0L);
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    // Called by the engine with what it knows of its connections
+    public void registerConnections(LongSupplier open, LongSupplier acceptQueue) {
+        registry.gauge("http_open_connections", "Connections open", open);
+        registry.gauge("http_accept_queue_length", "Connections waiting to be accepted, -1 where unknown",
+                acceptQueue);
+    }
+
+    // Histogram of the time requests to the route take from dispatch to an encoded response
+    public Histogram routeLatency(Route route) {
+        return registry.histogram("http_request_duration_seconds", "Time from dispatch to an encoded response",
+                "method", route.getMethod(), "route", route.getPath());
+    }
+
+    public void onAccepted() {
+        accepted.increment();
+    }
+
+    public void onParsed(long start) {
+        parse.record(micros(start, System.nanoTime()));
+    }
+
+    public void onParseError() {
+        parseErrors.increment();
+    }
+
+    public void onRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void onWritten(long bytes, long start) {
+        bytesWritten.add(bytes);
+        write.record(micros(start, System.nanoTime()));
+    }
+
+    public void onDispatchStarted() {
+        inFlight.increment();
+    }
+
+    public void onDispatchFinished() {
+        inFlight.decrement();
+    }
+
+    // Handler ran from start to encodeStart, compression from there to end
+    public void onDispatched(Histogram route, long start, long encodeStart, long end) {
+        handle.record(micros(start, encodeStart));
+        encode.record(micros(encodeStart, end));
+        if (route != null) {
+            route.record(micros(start, end));
+        }
+    }
+
+    public void onResponse(int status) {
+        int statusClass = status / 100 - 1;
+        if (statusClass >= 0 && statusClass < responses.length) {
+            responses[statusClass].increment();
+        }
+    }
+
+    public void onFileServed(boolean fromCache) {
+        (fromCache ? filesFromCache : filesFromDisk).increment();
+    }
+
+    public void onFileSaved() {
+        filesSaved.increment();
+    }
+
+    private static long micros(long start, long end) {
+        return (end - start) / 1000;
+    }
+}
@@ -0,0 +1,135 @@
+package infrastructure.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import infrastructure.container.Container;
+import infrastructure.http.BodyDecoder;
+import infrastructure.http.exceptions.HttpParseException;
+import infrastructure.metrics.ServerMetrics;
+
+/**
+ * Streamed request body on a blocking connection. Reads go through the
+ * connection's own buffer, starting with the body bytes that arrived with the
+ * head, so whatever follows the body is left there for the next request.
+ */
+public class BlockingRequestBody extends InputStream {
+    private final BodyDecoder decoder;
+    private final ByteBuffer buffer;
+    private final InputStream input;
+    private final SocketChannel channel;
+    private final ConnectionState state;
+    private final ServerMetrics metrics = Container.getOrCreate(ServerMetrics.class);
+    private boolean continuePending;
+    private IOException failure;
+
+    // The buffer is in read mode, positioned at the start of the body
+    public BlockingRequestBody(BodyDecoder decoder, ByteBuffer buffer, InputStream input, SocketChannel channel,
+            ConnectionState state, boolean expectContinue) {
+        this.decoder = decoder;
+        this.buffer = buffer;
+        this.input = input;
+        this.channel = channel;
+        this.state = state;
+        this.continuePending = expectContinue;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (length == 0) {
+            return 0;
+        }
+
+        if (continuePending) {
+            // The client only sends the body once told to, so say so on the first read
+            continuePending = false;
+            channel.write(ByteBuffer.wrap(BodyDecoder.CONTINUE_RESPONSE));
+        }
+
+        try {
+            while (!decoder.isComplete()) {
+                int decoded = decoder.decode(buffer, target, offset, length);
+                if (decoded > 0) {
+                    return decoded;
+                }
+                if (!decoder.isComplete()) {
+                    fill();
+                }
+            }
+            return -1;
+        } catch (HttpParseException e) {
+            failure = new IOException("Malformed request body: " + e.getMessage(), e);
+            throw failure;
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        int read;
+        // The connection's idle timeout covers each read of the body
+        state.startWaiting(System.currentTimeMillis());
+        try {
+            read = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } finally {
+            state.stopWaiting();
+        }
+        buffer.flip();
+        if (state.isExpired()) {
+            failure = new SocketTimeoutException("Timed out reading the request body");
+            throw failure;
+        }
+        if (read < 0) {
+            failure = new EOFException("Connection closed before the end of the request body");
+            throw failure;
+        }
+        metrics.onRead(read);
+        buffer.limit(buffer.limit() + read);
+    }
+
+    public boolean isComplete() {
+        return decoder.isComplete();
+    }
+
+    /**
+     * Reads and drops what the handler left of the body so the connection can
+     * be reused. Returns false when the connection has to be closed instead:
+     * the body was malformed, is over {@code limit} bytes, or the client is
+     * still waiting for 100 Continue.
+     */
+    public boolean discardRemaining(long limit) {
+        if (decoder.isComplete()) {
+            return failure == null;
+        }
+        if (failure != null || continuePending) {
+            return false;
+        }
+
+        byte[] scratch = new byte[8 * 1024];
+        long discarded = 0;
+        try {
+            while (discarded <= limit) {
+                int read = read(scratch, 0, scratch.length);
+                if (read < 0) {
+                    return true;
+                }
+                discarded += read;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+package infrastructure.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+
+/**
+ * Fixed-size direct buffers shared by every connection. They are cut from
+ * slabs allocated on demand, so the server never holds more off-heap memory
+ * than the configured budget, and are handed back when a connection has
+ * written what it put in them. Once the budget is used up callers fall back
+ * to heap buffers.
+ */
+public class BufferPool {
+    private static final Logger logger = LogManager.getLogger(BufferPool.class);
+    public static final int BUFFER_SIZE = 8 * 1024;
+    private static final int SLAB_SIZE = 128 * BUFFER_SIZE;
+
+    private final ByteBuffer[] free;
+    private final int maxSlabs;
+    // Guards the free stack and the slab count, only ever held for a push or a pop
+    private final ReentrantLock lock = new ReentrantLock();
+    private int freeCount = 0;
+    private int slabs = 0;
+
+    public BufferPool(Configuration configuration) {
+        long maxBytes = Math.max(0, configuration.getDirectBufferPoolMaxBytes());
+        this.maxSlabs = (int) (maxBytes / SLAB_SIZE);
+        this.free = new ByteBuffer[maxSlabs * (SLAB_SIZE / BUFFER_SIZE)];
+        logger.info("Direct buffer pool with a budget of {} bytes", (long) maxSlabs * SLAB_SIZE);
+    }
+
+    /**
+     * Returns a cleared buffer of {@link #BUFFER_SIZE} bytes, or null when the
+     * budget is used up.
+     */
+    public ByteBuffer acquire() {
+        lock.lock();
+        try {
+            if (freeCount == 0 && !allocateSlab()) {
+                return null;
+            }
+            ByteBuffer buffer = free[--freeCount];
+            free[freeCount] = null;
+            return buffer.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The caller must not touch the buffer afterwards
+    public void release(ByteBuffer buffer) {
+        lock.lock();
+        try {
+            free[freeCount++] = buffer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean allocateSlab() {
+        if (slabs == maxSlabs) {
+            return false;
+        }
+
+        ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        for (int offset = 0; offset < SLAB_SIZE; offset += BUFFER_SIZE) {
+            free[freeCount++] = slab.slice(offset, BUFFER_SIZE);
+        }
+        slabs++;
+        return true;
+    }
+
+    public long getAllocatedBytes() {
+        lock.lock();
+        try {
+            return (long) slabs * SLAB_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
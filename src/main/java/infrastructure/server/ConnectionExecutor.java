@@ -0,0 +1,119 @@
+package infrastructure.server;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import enums.ExecutorType;
+
+/**
+ * Runs connection handlers on the configured executor and caps the number of
+ * connections in flight. Callers take a permit with {@link #acquire()} before
+ * accepting, so a burst waits in the listen backlog instead of spawning threads.
+ */
+public class ConnectionExecutor implements Closeable {
+    private static final Logger logger = LogManager.getLogger(ConnectionExecutor.class);
+    private static final String THREAD_NAME_PREFIX = "Request-Handler-Thread-";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ExecutorType type;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    // Counted apart from the permits, which acceptors hold while still waiting in accept()
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxConnections;
+
+    public ConnectionExecutor(Configuration configuration) {
+        this.type = configuration.getExecutorType();
+
+        int limit = Math.max(1, configuration.getMaxConnections());
+        switch (type) {
+            case PLATFORM:
+                int workerThreads = Math.max(1, configuration.getWorkerThreads());
+                if (limit > workerThreads) {
+                    // Each connection pins a platform thread, anything above the pool would only queue
+                    logger.warn("maxConnections {} exceeds workerThreads {}, capping to {}", limit, workerThreads,
+                            workerThreads);
+                    limit = workerThreads;
+                }
+                this.executor = Executors.newFixedThreadPool(workerThreads,
+                        Thread.ofPlatform().name(THREAD_NAME_PREFIX, 0).factory());
+                break;
+            case VIRTUAL:
+            default:
+                this.executor = Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name(THREAD_NAME_PREFIX, 0).factory());
+                break;
+        }
+
+        this.maxConnections = limit;
+        this.permits = new Semaphore(limit);
+        logger.info("Connection executor {} started with a limit of {} connections", type.getValue(), limit);
+    }
+
+    public void acquire() throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            logger.warn("Connection limit of {} reached, waiting for a free slot", maxConnections);
+            permits.acquire();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Runs the task on the executor. The permit taken by {@link #acquire()} is
+     * released once the task ends, or immediately if it cannot be scheduled.
+     */
+    public void execute(Runnable task) {
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public ExecutorType getType() {
+        return type;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
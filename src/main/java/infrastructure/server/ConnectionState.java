@@ -0,0 +1,168 @@
+package infrastructure.server;
+
+import java.util.function.BooleanSupplier;
+
+import domain.model.Configuration;
+import domain.model.Request;
+
+/**
+ * Lifecycle of one connection, owned by the thread serving it: whether it
+ * stays open after the request being handled, and how long it may wait on
+ * the client. Only time spent waiting on the client counts. The idle timeout
+ * restarts with every byte moved, and once the first bytes of a request head
+ * arrive the whole head must follow within the header timeout. The deadline
+ * is watched by a {@link TimerWheel}, which runs the timeout action when it
+ * passes.
+ */
+public class ConnectionState implements TimerWheel.Timeout {
+    private final int maxRequests;
+    private final long idleTimeout;
+    private final long headerTimeout;
+    private final BooleanSupplier draining;
+    private final Runnable onTimeout;
+    private int requests = 0;
+    private boolean keepAlive = true;
+    private boolean waiting = false;
+    private long lastActivity;
+    // When the first bytes of the head being read arrived, 0 when there are none
+    private long headStartedAt = 0;
+    // Read by the thread advancing the wheel
+    private volatile long deadline = Long.MAX_VALUE;
+    private volatile boolean expired = false;
+    private volatile boolean closed = false;
+    // Waiting for the next request with nothing buffered, read by the draining thread
+    private volatile boolean idle = false;
+
+    public ConnectionState(Configuration configuration, BooleanSupplier draining, Runnable onTimeout) {
+        this.maxRequests = configuration.getMaxRequestsPerConnection();
+        this.idleTimeout = configuration.getIdleTimeout();
+        this.headerTimeout = configuration.getHeaderTimeout();
+        this.draining = draining;
+        this.onTimeout = onTimeout;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * How often a wheel watching these connections must look at them again:
+     * the shortest timeout, which a deadline is never set closer than.
+     */
+    public static long getHorizon(Configuration configuration) {
+        long horizon = Long.MAX_VALUE;
+        if (configuration.getIdleTimeout() > 0) {
+            horizon = configuration.getIdleTimeout();
+        }
+        if (configuration.getHeaderTimeout() > 0) {
+            horizon = Math.min(horizon, configuration.getHeaderTimeout());
+        }
+        return horizon == Long.MAX_VALUE ? 60_000 : horizon;
+    }
+
+    /**
+     * Counts a request read from the connection and decides whether the
+     * connection stays open after it, which the request carries to its
+     * Connection header. Returns false for the last request.
+     */
+    public boolean admit(Request request) {
+        requests++;
+        keepAlive = keepAlive && request.isKeepAlive() && (maxRequests <= 0 || requests < maxRequests)
+                && !draining.getAsBoolean();
+        request.setKeepAlive(keepAlive);
+        headStartedAt = 0;
+        updateDeadline();
+        return keepAlive;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    // The connection needs the client to send or read something before it can go on
+    public void startWaiting(long now) {
+        if (!waiting) {
+            waiting = true;
+            lastActivity = now;
+            updateDeadline();
+        }
+    }
+
+    // A handler or the server has the connection's attention, it cannot time out meanwhile
+    public void stopWaiting() {
+        waiting = false;
+        deadline = Long.MAX_VALUE;
+    }
+
+    public boolean isWaiting() {
+        return waiting;
+    }
+
+    // Bytes moved in either direction
+    public void onActivity(long now) {
+        lastActivity = now;
+        updateDeadline();
+    }
+
+    // Part of a request head is buffered, the header timeout runs from the first time this is called
+    public void onPartialHead(long now) {
+        if (headStartedAt == 0) {
+            headStartedAt = now;
+            updateDeadline();
+        }
+    }
+
+    public boolean isReadingHead() {
+        return headStartedAt != 0;
+    }
+
+    private void updateDeadline() {
+        if (!waiting) {
+            return;
+        }
+        long next = idleTimeout > 0 ? lastActivity + idleTimeout : Long.MAX_VALUE;
+        if (headStartedAt != 0 && headerTimeout > 0) {
+            next = Math.min(next, headStartedAt + headerTimeout);
+        }
+        deadline = next;
+    }
+
+    @Override
+    public long getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return closed;
+    }
+
+    @Override
+    public void expire() {
+        expired = true;
+        onTimeout.run();
+    }
+
+    // Whether the timeout action has run
+    public boolean isExpired() {
+        return expired;
+    }
+
+    // Takes the connection off the wheel
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
+    public void setIdle(boolean idle) {
+        this.idle = idle;
+    }
+
+    public boolean isDraining() {
+        return draining.getAsBoolean();
+    }
+}
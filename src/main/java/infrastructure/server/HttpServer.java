@@ -0,0 +1,19 @@
+package infrastructure.server;
+
+import java.io.Closeable;
+import java.util.List;
+
+import domain.model.Controller;
+
+public interface HttpServer extends Closeable {
+    void registerControllers(List<Controller> controllers);
+
+    void start(boolean reuseAddress);
+
+    /**
+     * Stops accepting connections and lets the open ones finish the requests
+     * they are serving, closing each once it is idle. start() returns once
+     * they are all closed or the drain timeout has passed.
+     */
+    void drain();
+}
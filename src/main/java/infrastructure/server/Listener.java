@@ -0,0 +1,156 @@
+package infrastructure.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+
+/**
+ * Listening sockets of a server, one per acceptor thread. With more than one,
+ * every socket is bound to the same port with SO_REUSEPORT and the kernel
+ * spreads incoming connections across them, so accepting scales with cores
+ * instead of queueing behind a single thread.
+ */
+public class Listener implements Closeable {
+    private static final Logger logger = LogManager.getLogger(Listener.class);
+    // Linux lists listening sockets here, with the length of their accept queue as rx_queue
+    private static final List<Path> SOCKET_TABLES = List.of(Path.of("/proc/net/tcp"), Path.of("/proc/net/tcp6"));
+    private static final String LISTEN_STATE = "0A";
+
+    // Accept loop of one socket, returns once the socket is closed
+    @FunctionalInterface
+    public interface Acceptor {
+        void accept(ServerSocketChannel channel, int index) throws IOException;
+    }
+
+    private final Configuration configuration;
+    private final ServerSocketChannel[] channels;
+
+    public Listener(Configuration configuration) throws IOException {
+        this.configuration = configuration;
+        int acceptors = configuration.getAcceptors() != null && configuration.getAcceptors() > 0
+                ? configuration.getAcceptors()
+                : Runtime.getRuntime().availableProcessors();
+
+        ServerSocketChannel first = ServerSocketChannel.open();
+        if (acceptors > 1 && !first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            logger.warn("SO_REUSEPORT is not supported on this platform, using a single acceptor");
+            acceptors = 1;
+        }
+        this.channels = new ServerSocketChannel[acceptors];
+        channels[0] = first;
+        for (int i = 1; i < acceptors; i++) {
+            channels[i] = ServerSocketChannel.open();
+        }
+    }
+
+    public int size() {
+        return channels.length;
+    }
+
+    public void bind(boolean reuseAddress) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(configuration.getPort());
+        for (ServerSocketChannel channel : channels) {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+            if (channels.length > 1) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(address, configuration.getBacklog());
+        }
+        logger.info("Listening on port {} with {} acceptors and a backlog of {}",
+                configuration.getPort(), channels.length, configuration.getBacklog());
+    }
+
+    /**
+     * Runs the acceptor on every socket, each on its own thread. The calling
+     * thread serves the first socket and returns once all of them are closed.
+     */
+    public void acceptAll(Acceptor acceptor) throws IOException {
+        Thread[] threads = new Thread[channels.length];
+        for (int i = 1; i < channels.length; i++) {
+            int index = i;
+            threads[i] = Thread.ofPlatform().name("Acceptor-" + i).start(() -> {
+                try {
+                    acceptor.accept(channels[index], index);
+                } catch (IOException e) {
+                    logger.error("Acceptor {} stopped: {}", index, e.getMessage());
+                }
+            });
+        }
+
+        try {
+            acceptor.accept(channels[0], 0);
+        } catch (IOException e) {
+            // Stop the other acceptors too, as a single one would have
+            try {
+                close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            for (int i = 1; i < threads.length; i++) {
+                try {
+                    threads[i].join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Connections the kernel has completed that no acceptor has taken yet,
+     * summed over every socket listening on the port. Returns -1 where the
+     * kernel does not expose it.
+     */
+    public long getAcceptQueueLength() {
+        String port = String.format(":%04X", configuration.getPort());
+        long queued = 0;
+        boolean found = false;
+        for (Path table : SOCKET_TABLES) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(table);
+            } catch (IOException e) {
+                continue;
+            }
+            // sl local_address rem_address st tx_queue:rx_queue ...
+            for (int i = 1; i < lines.size(); i++) {
+                String[] fields = lines.get(i).trim().split("\\s+");
+                if (fields.length < 5 || !fields[1].endsWith(port) || !LISTEN_STATE.equals(fields[3])) {
+                    continue;
+                }
+                String queues = fields[4];
+                queued += Long.parseLong(queues.substring(queues.indexOf(':') + 1), 16);
+                found = true;
+            }
+        }
+        return found ? queued : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ServerSocketChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package infrastructure.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import domain.model.Response;
+import infrastructure.api.Router;
+import infrastructure.container.Container;
+import infrastructure.http.ResponseSerializer;
+import infrastructure.logging.AccessLog;
+import infrastructure.metrics.ServerMetrics;
+
+/**
+ * Per-connection queue of the responses to a batch of pipelined requests.
+ * Requests may be dispatched concurrently, but their responses are always
+ * drained in the order the requests arrived.
+ */
+public class ResponseQueue {
+    // Handlers reading a streamed body block on the connection, so they never run on its thread
+    private static final Executor STREAMED_BODY_EXECUTOR = Executors
+            .newThreadPerTaskExecutor(Thread.ofVirtual().name("Request-Body-", 0).factory());
+    private static final AtomicLong connectionIds = new AtomicLong();
+
+    private final List<Request> pendingRequests = new ArrayList<>();
+    // A Response for requests handled on the calling thread, a CompletableFuture of one otherwise
+    private final List<Object> responses = new ArrayList<>();
+    // Request each response answers, null for responses added without one
+    private final List<Request> dispatchedRequests = new ArrayList<>();
+    private final Executor executor;
+    private final Consumer<Request> recycler;
+    private final AccessLog accessLog;
+    private final ServerMetrics metrics = Container.getOrCreate(ServerMetrics.class);
+    // Identifies the connection in the access log
+    private final long connectionId = connectionIds.incrementAndGet();
+    private boolean closeRequested = false;
+
+    public ResponseQueue(Executor executor, Consumer<Request> recycler) {
+        this(executor, recycler, null);
+    }
+
+    /**
+     * A null executor dispatches every request on the calling thread. Requests
+     * are handed to the recycler once their response is drained, unless
+     * something may still use them. Drained responses are recorded in the
+     * access log, if there is one.
+     */
+    public ResponseQueue(Executor executor, Consumer<Request> recycler, AccessLog accessLog) {
+        this.executor = executor;
+        this.recycler = recycler;
+        this.accessLog = accessLog;
+    }
+
+    // Executor for pipelined requests, or null when they are handled one after another
+    public static ExecutorService newPipelineExecutor(Configuration configuration) {
+        if (!Boolean.TRUE.equals(configuration.getParallelPipelining())) {
+            return null;
+        }
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Pipeline-Dispatch-", 0).factory());
+    }
+
+    public void add(Request request) {
+        pendingRequests.add(request);
+    }
+
+    // Responses produced without routing, such as parse errors, go after every request queued so far
+    public void add(Response response) {
+        dispatch();
+        responses.add(response);
+        dispatchedRequests.add(null);
+    }
+
+    /**
+     * Dispatches the requests added since the last call. With an executor, all
+     * but the last run on it while the last one runs on the calling thread.
+     * Requests with a streamed body always get a thread of their own.
+     */
+    public void dispatch() {
+        Router router = Container.getOrCreate(Router.class);
+        int last = pendingRequests.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            Request request = pendingRequests.get(i);
+            if (request.hasStreamedBody()) {
+                responses.add(CompletableFuture.supplyAsync(() -> router.dispatch(request), STREAMED_BODY_EXECUTOR));
+            } else if (executor == null || i == last) {
+                responses.add(router.dispatch(request));
+            } else {
+                responses.add(CompletableFuture.supplyAsync(() -> router.dispatch(request), executor));
+            }
+            dispatchedRequests.add(request);
+        }
+        pendingRequests.clear();
+    }
+
+    public boolean isEmpty() {
+        return pendingRequests.isEmpty() && responses.isEmpty();
+    }
+
+    public boolean isDone() {
+        for (Object response : responses) {
+            if (response instanceof CompletableFuture<?> future && !future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public CompletableFuture<Void> whenDone() {
+        List<CompletableFuture<?>> running = new ArrayList<>();
+        for (Object response : responses) {
+            if (response instanceof CompletableFuture<?> future) {
+                running.add(future);
+            }
+        }
+        return CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Moves the queued responses to the write queue in request order, blocking
+     * on any still being handled, and empties the queue.
+     */
+    public void drain(WriteQueue writes) {
+        for (int i = 0; i < responses.size(); i++) {
+            Response response = responses.get(i) instanceof CompletableFuture<?> future
+                    ? (Response) future.join()
+                    : (Response) responses.get(i);
+            Request request = dispatchedRequests.get(i);
+            closeRequested |= response.getHeaders().contains("Connection", "close");
+            // A streaming body is produced after this and may still read its request
+            boolean recyclable = request != null && !response.hasStreamingBody();
+
+            metrics.onResponse(response.getStatusCode());
+            if (accessLog != null) {
+                accessLog.record(connectionId, request, response.getStatusCode(), bodyLength(response));
+            }
+            writes.add(response);
+            if (recyclable) {
+                recycler.accept(request);
+            }
+        }
+
+        responses.clear();
+        dispatchedRequests.clear();
+    }
+
+    // Bytes of the body as sent, -1 for a streaming body whose length is not known yet
+    private static long bodyLength(Response response) {
+        if (response.hasStreamingBody()) {
+            return -1;
+        }
+        return response.hasFileBody() ? response.getFileBodyLength() : ResponseSerializer.bodyLength(response);
+    }
+
+    // Whether any drained response told the client the connection will be closed
+    public boolean isCloseRequested() {
+        return closeRequested;
+    }
+}
@@ -0,0 +1,238 @@
+package infrastructure.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.StreamingBody;
+
+/**
+ * A streaming response body being produced on its own virtual thread and
+ * written to the connection as it arrives. The producer hands over chunks of
+ * at most {@link #CHUNK_SIZE} bytes through a queue of {@link #MAX_CHUNKS}, and
+ * blocks when the queue is full, so a response holds the same amount of memory
+ * however long it is and never runs ahead of a slow client.
+ */
+public class ResponseStream {
+    private static final Logger logger = LogManager.getLogger(ResponseStream.class);
+    private static final AtomicInteger counter = new AtomicInteger();
+    static final int CHUNK_SIZE = 8 * 1024;
+    static final int MAX_CHUNKS = 4;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    // Set by the writer when it runs out of chunks, so the producer knows to call the listener
+    private final AtomicBoolean waiting = new AtomicBoolean();
+    private final Runnable onChunkAvailable;
+    private final Thread producer;
+    private ByteBuffer current;
+    private boolean complete = false;
+    private volatile boolean cancelled = false;
+    private volatile Throwable failure;
+
+    /**
+     * Starts producing the body. {@code onChunkAvailable} is called from the
+     * producer when a chunk arrives after a non-blocking write ran out of them,
+     * and may be null when the stream is only written to blocking channels.
+     */
+    public ResponseStream(StreamingBody body, boolean chunked, Runnable onChunkAvailable) {
+        this.onChunkAvailable = onChunkAvailable;
+        this.producer = Thread.ofVirtual().name("Response-Stream-" + counter.incrementAndGet())
+                .start(() -> produce(body, chunked));
+    }
+
+    private void produce(StreamingBody body, boolean chunked) {
+        try {
+            ChunkOutputStream output = new ChunkOutputStream(chunked);
+            body.writeTo(output);
+            output.close();
+        } catch (Throwable e) {
+            if (!cancelled) {
+                logger.error("Error producing streaming response: {}", e.getMessage());
+            }
+            failure = e;
+        }
+
+        try {
+            offer(END);
+        } catch (InterruptedIOException e) {
+            // Cancelled, nobody is reading the chunks any more
+        }
+    }
+
+    private void offer(ByteBuffer chunk) throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Response stream cancelled");
+        }
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Response stream cancelled");
+        }
+        if (waiting.getAndSet(false) && onChunkAvailable != null) {
+            onChunkAvailable.run();
+        }
+    }
+
+    /**
+     * Writes the chunks produced so far. A blocking channel waits for the
+     * producer until the body is complete, a non-blocking one returns as soon
+     * as the socket is full or no chunk is ready. Returns the bytes written.
+     */
+    public long writeTo(SocketChannel channel) throws IOException {
+        long written = 0;
+        while (!complete) {
+            if (current == null || !current.hasRemaining()) {
+                current = nextChunk(channel.isBlocking());
+                if (current == null) {
+                    return written;
+                }
+                if (current == END) {
+                    complete = true;
+                    if (failure != null) {
+                        // The client cannot tell a truncated body apart otherwise
+                        throw new IOException("Streaming response failed", failure);
+                    }
+                    break;
+                }
+            }
+
+            int count = channel.write(current);
+            written += count;
+            if (count == 0 && !channel.isBlocking()) {
+                return written;
+            }
+        }
+        return written;
+    }
+
+    private ByteBuffer nextChunk(boolean blocking) throws IOException {
+        if (blocking) {
+            try {
+                return chunks.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for the response body");
+            }
+        }
+
+        ByteBuffer chunk = chunks.poll();
+        if (chunk == null) {
+            // Check again after raising the flag, in case the producer added one in between
+            waiting.set(true);
+            chunk = chunks.poll();
+            if (chunk != null) {
+                waiting.set(false);
+            }
+        }
+        return chunk;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Whether the last write stopped because the producer is behind rather than the socket
+    public boolean isWaitingForChunk() {
+        return !complete && (current == null || !current.hasRemaining());
+    }
+
+    // Stops the producer, its next write fails
+    public void cancel() {
+        cancelled = true;
+        producer.interrupt();
+        chunks.clear();
+    }
+
+    /**
+     * Buffers what the body writes and hands it over as a chunk when the buffer
+     * is full or the body flushes. Without chunked framing the bytes are passed
+     * through as they are, for clients that read until the connection closes.
+     */
+    private final class ChunkOutputStream extends OutputStream {
+        private final boolean chunked;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+        private boolean closed = false;
+
+        private ChunkOutputStream(boolean chunked) {
+            this.chunked = chunked;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (count == buffer.length) {
+                sendChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ensureOpen();
+            while (length > 0) {
+                if (count == buffer.length) {
+                    sendChunk();
+                }
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            ensureOpen();
+            sendChunk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            sendChunk();
+            closed = true;
+            if (chunked) {
+                offer(ByteBuffer.wrap(LAST_CHUNK));
+            }
+        }
+
+        private void sendChunk() throws IOException {
+            if (count == 0) {
+                return;
+            }
+
+            ByteBuffer chunk;
+            if (chunked) {
+                byte[] size = (Integer.toHexString(count) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+                chunk = ByteBuffer.allocate(size.length + count + 2);
+                chunk.put(size).put(buffer, 0, count).put((byte) '\r').put((byte) '\n').flip();
+            } else {
+                chunk = ByteBuffer.wrap(Arrays.copyOf(buffer, count));
+            }
+            count = 0;
+            offer(chunk);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+    }
+}
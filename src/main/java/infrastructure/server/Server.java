@@ -1,12 +1,16 @@
 package infrastructure.server;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,118 +18,335 @@ import org.apache.logging.log4j.Logger;
 import domain.model.Configuration;
 import domain.model.Controller;
 import domain.model.Request;
-import enums.RequestMethod;
 import infrastructure.api.Router;
 import infrastructure.container.Container;
+import infrastructure.http.BodyDecoder;
+import infrastructure.http.HttpRequestParser;
+import infrastructure.http.exceptions.HttpParseException;
+import infrastructure.logging.AccessLog;
+import infrastructure.metrics.ServerMetrics;
 
-public class Server extends ServerSocket {
+public class Server implements HttpServer {
     private final static Logger logger = LogManager.getLogger(Server.class);
+    private static final long DRAIN_POLL_INTERVAL = 50;
+    private static final long ACCEPT_RETRY_DELAY = 100;
+    private final Configuration configuration;
     private final String filesDirectory;
-    private final int timeout = 30000;
-    private boolean keepAlive = true;
+    private final Listener listener;
+    private final ConnectionExecutor connectionExecutor;
+    private final ExecutorService pipelineExecutor;
+    private final BufferPool bufferPool;
+    private final AccessLog accessLog;
+    private final ServerMetrics metrics;
+    // Deadlines of every connection, expired by a single reaper thread
+    private final TimerWheel timeouts;
+    private final Thread reaper;
+    // Open connections, so draining can close those waiting for a request
+    private final Map<ConnectionState, SocketChannel> connections = new ConcurrentHashMap<>();
+    private volatile boolean draining = false;
 
     public Server(Configuration configuration) throws IOException {
-        super(configuration.getPort());
+        this.configuration = configuration;
         this.filesDirectory = configuration.getDirectory();
+        this.listener = new Listener(configuration);
+        this.connectionExecutor = new ConnectionExecutor(configuration);
+        this.pipelineExecutor = ResponseQueue.newPipelineExecutor(configuration);
+        this.bufferPool = Container.getOrCreate(BufferPool.class, configuration);
+        this.accessLog = Container.getOrCreate(AccessLog.class, configuration);
+        this.metrics = Container.getOrCreate(ServerMetrics.class);
+        metrics.registerConnections(connectionExecutor::getInFlight, listener::getAcceptQueueLength);
+        this.timeouts = new TimerWheel(TimerWheel.DEFAULT_TICK, TimerWheel.DEFAULT_SLOTS,
+                ConnectionState.getHorizon(configuration));
+        this.reaper = Thread.ofPlatform().name("Connection-Reaper").daemon().unstarted(this::reapTimeouts);
         logger.info("Server started on port {} serving files from {}",
                 configuration.getPort(),
                 this.filesDirectory);
     }
 
+    @Override
     public void start(boolean reuseAddress) {
         try {
-            this.setReuseAddress(reuseAddress);
-            handleConnections();
+            listener.bind(reuseAddress);
+            reaper.start();
+            listener.acceptAll((serverChannel, index) -> handleConnections(serverChannel));
+            if (draining) {
+                awaitDrained();
+            }
         } catch (IOException e) {
             logger.error("Failed to start server: {}", e.getMessage());
         }
     }
 
+    @Override
     public void registerControllers(List<Controller> controllers) {
         Router.registerControllers(controllers);
     }
 
-    public void handleConnections() throws IOException {
-        while (true) {
-            Socket clientSocket = this.accept();
-            clientSocket.setSoTimeout(timeout);
-            logger.debug("Accepted new connection from {}", clientSocket.getInetAddress());
+    // Accept loop of one listening socket, connections from every socket share the executor
+    public void handleConnections(ServerSocketChannel serverChannel) throws IOException {
+        while (serverChannel.isOpen()) {
+            // Wait for a free slot before accepting so bursts queue up in the backlog
+            try {
+                connectionExecutor.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
 
-            Thread requestThread = new Thread(() -> {
+            SocketChannel clientChannel;
+            try {
+                clientChannel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                connectionExecutor.release();
+                return;
+            } catch (IOException e) {
+                // Out of file descriptors or an aborted handshake, the socket itself is still listening
+                connectionExecutor.release();
+                logger.error("Failed to accept connection: {}", e.getMessage());
                 try {
-                    manageRequestProcessing(clientSocket);
-                } catch (IOException e) {
-                    logger.error("IOException while processing request: {}", e.getMessage());
+                    Thread.sleep(ACCEPT_RETRY_DELAY);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
                 }
-            }, "Request-Handler-Thread");
-            requestThread.start();
+                continue;
+            }
+            metrics.onAccepted();
+            logger.debug("Accepted new connection from {}", clientChannel.socket().getRemoteSocketAddress());
+
+            try {
+                connectionExecutor.execute(() -> {
+                    try {
+                        manageRequestProcessing(clientChannel);
+                    } catch (IOException e) {
+                        logger.error("IOException while processing request: {}", e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.error("Connection rejected by executor: {}", e.getMessage());
+                clientChannel.close();
+            }
         }
     }
 
-    private void manageRequestProcessing(Socket clientSocket) throws IOException {
-        // Handle client connection (read/write data)
-        BufferedReader input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        OutputStream output = clientSocket.getOutputStream();
+    @Override
+    public void drain() {
+        logger.info("Draining {} connections", connectionExecutor.getInFlight());
+        draining = true;
+        try {
+            listener.close();
+        } catch (IOException e) {
+            logger.error("Failed to close server channel: {}", e.getMessage());
+        }
 
-        int i = 0;
-        Request request = new Request();
+        // Connections serving a request close on their own once it is answered
+        connections.forEach((state, channel) -> {
+            if (state.isIdle()) {
+                closeQuietly(channel);
+            }
+        });
+    }
 
-        while (this.keepAlive) {
-            // Read line
-            String line = input.readLine();
-            if (line == null)
-                break; // Socket closed by client
+    // Waits for the connections left open by drain(), closing them once the drain timeout has passed
+    private void awaitDrained() {
+        long deadline = System.currentTimeMillis() + configuration.getDrainTimeout();
+        try {
+            while (connectionExecutor.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(DRAIN_POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-            String[] parts = line.split(" ");
-            if (parts.length < 3)
-                break;
-            logger.debug("line: {}", line);
+        if (connectionExecutor.getInFlight() > 0) {
+            logger.warn("Drain timeout passed, closing {} connections", connectionExecutor.getInFlight());
+            connections.values().forEach(Server::closeQuietly);
+        } else {
+            logger.info("All connections drained");
+        }
+    }
 
+    private void reapTimeouts() {
+        while (!Thread.currentThread().isInterrupted()) {
             try {
-                request.setMethod(RequestMethod.valueOf(parts[0]));
-                request.setPath(parts[1]);
-                request.setVersion(parts[2]);
-            } catch (Exception e) {
-                logger.error("Exception: {}", e.getMessage());
+                Thread.sleep(timeouts.getTick());
+            } catch (InterruptedException e) {
+                return;
             }
+            timeouts.advance(System.currentTimeMillis());
+        }
+    }
 
-            while (!(line = input.readLine()).isEmpty()) {
-                String[] headers = line.split(":", 2);
-                if (headers.length == 2) {
-                    String key = headers[0].trim();
-                    String value = headers[1].trim();
-                    request.getHeaders().put(key, value);
+    // Run by the reaper, the read blocked on the connection ends and finds it expired
+    private static void shutdownInput(SocketChannel channel) {
+        try {
+            channel.shutdownInput();
+        } catch (IOException e) {
+            logger.debug("Failed to shut down input of connection: {}", e.getMessage());
+        }
+    }
 
-                    // Check for keep-alive
-                    if (key.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
-                        this.keepAlive = false;
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            listener.close();
+        } finally {
+            reaper.interrupt();
+            connectionExecutor.close();
+            if (pipelineExecutor != null) {
+                pipelineExecutor.close();
+            }
+            accessLog.close();
+        }
+    }
+
+    private void manageRequestProcessing(SocketChannel clientChannel) throws IOException {
+        // Reads go through the socket stream, writes through the channel
+        InputStream input = clientChannel.socket().getInputStream();
+        HttpRequestParser parser = new HttpRequestParser(configuration);
+        ResponseQueue responses = new ResponseQueue(pipelineExecutor, parser::recycle, accessLog);
+        ByteBuffer buffer = HttpRequestParser.allocateBuffer().flip();
+        ConnectionState state = new ConnectionState(configuration, () -> draining, () -> shutdownInput(clientChannel));
+        connections.put(state, clientChannel);
+        timeouts.add(state);
+
+        try (clientChannel; WriteQueue writes = new WriteQueue(bufferPool)) {
+            while (true) {
+                // Take every request already received, pipelined clients send several at once
+                boolean closeAfterWrite = false;
+                Request streamedRequest = null;
+                BodyDecoder streamedDecoder = null;
+                try {
+                    Request request;
+                    while (!closeAfterWrite && (request = parse(parser, buffer)) != null) {
+                        logger.debug("Request: {}", request);
+                        boolean last = !state.admit(request);
+                        streamedDecoder = parser.takeStreamedBody();
+                        if (streamedDecoder != null) {
+                            // Its body comes next in the stream, so answer the requests before it first
+                            streamedRequest = request;
+                            break;
+                        }
+
+                        closeAfterWrite = last;
+                        responses.add(request);
                     }
+                } catch (HttpParseException e) {
+                    metrics.onParseError();
+                    logger.warn("Rejecting request: {}", e.getMessage());
+                    responses.add(e.toResponse());
+                    closeAfterWrite = true;
+                }
+
+                if (!responses.isEmpty()) {
+                    responses.dispatch();
+                    responses.drain(writes);
+                    writes.writeTo(clientChannel);
+                    if (closeAfterWrite || responses.isCloseRequested()) {
+                        break;
+                    }
+                }
+
+                if (streamedRequest != null) {
+                    // The body is read through the buffer, which the request must not point into
+                    streamedRequest.detach();
+                    BlockingRequestBody body = new BlockingRequestBody(streamedDecoder, buffer, input, clientChannel,
+                            state, streamedRequest.isContinueExpected());
+                    streamedRequest.setBodyStream(body);
+                    responses.add(streamedRequest);
+                    responses.dispatch();
+                    responses.drain(writes);
+                    writes.writeTo(clientChannel);
+                    if (responses.isCloseRequested() || !body.discardRemaining(configuration.getMaxBodySize())) {
+                        break;
+                    }
+                    // Requests pipelined after the body may already be in the buffer
+                    continue;
                 }
-            }
 
-            if (request.getHeaders().containsKey("Content-Length")) {
-                int contentLength = Integer.parseInt(request.getHeaders().get("Content-Length").trim());
-                char[] bodyChars = new char[contentLength];
-                input.read(bodyChars, 0, contentLength);
-                request.setBody(new String(bodyChars));
+                // Requests point into the buffer, so only compact once they have all been handled
+                buffer = parser.ensureCapacity(buffer.compact());
+                if (!awaitRequestBytes(clientChannel, input, buffer, parser, state, writes)) {
+                    break;
+                }
             }
+        } finally {
+            state.close();
+            connections.remove(state);
+        }
+    }
 
-            logger.info("Request: {}", request);
+    private Request parse(HttpRequestParser parser, ByteBuffer buffer) {
+        long start = System.nanoTime();
+        Request request = parser.parse(buffer);
+        if (request != null) {
+            metrics.onParsed(start);
+        }
+        return request;
+    }
 
-            // Process the request
-            Router router = Container.getOrCreate(Router.class);
-            router.perform(request, output);
+    /**
+     * Reads more of the next request into the buffer, which is left in read
+     * mode. Returns false when the connection should be closed instead: the
+     * client closed it, it timed out or the server is draining.
+     */
+    private boolean awaitRequestBytes(SocketChannel clientChannel, InputStream input, ByteBuffer buffer,
+            HttpRequestParser parser, ConnectionState state, WriteQueue writes) throws IOException {
+        long now = System.currentTimeMillis();
+        if (buffer.position() == 0) {
+            // Draining closes connections waiting here, the flag is raised before checking it
+            state.setIdle(true);
+            if (state.isDraining()) {
+                return false;
+            }
+        } else if (parser.isReadingHead()) {
+            state.onPartialHead(now);
+        }
 
-            if (request.getVersion().equalsIgnoreCase("HTTP/1.0") &&
-                    !request.getHeaders().getOrDefault("Connection", "").equalsIgnoreCase("keep-alive")) {
-                this.keepAlive = false;
+        int read;
+        state.startWaiting(now);
+        try {
+            read = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } catch (IOException e) {
+            if (state.isDraining()) {
+                // Closed by drain() while waiting for the next request
+                return false;
             }
+            throw e;
+        } finally {
+            state.stopWaiting();
+            state.setIdle(false);
+        }
+        if (state.isExpired()) {
+            onTimeout(clientChannel, state, writes);
+            return false;
+        }
+        if (read < 0) {
+            // Socket closed by client
+            return false;
         }
 
-        clientSocket.close();
+        metrics.onRead(read);
+        buffer.position(buffer.position() + read).flip();
+        return true;
     }
 
-    public boolean isKeepAlive() {
-        return keepAlive;
+    // A client that stopped halfway through a request head is told why the connection closes
+    private void onTimeout(SocketChannel clientChannel, ConnectionState state, WriteQueue writes) throws IOException {
+        if (!state.isReadingHead()) {
+            logger.debug("Closing idle connection after {} requests", state.getRequests());
+            return;
+        }
+        logger.warn("Request head not received within the header timeout");
+        writes.add(new HttpParseException(408, "Request Timeout").toResponse());
+        writes.writeTo(clientChannel);
     }
 }
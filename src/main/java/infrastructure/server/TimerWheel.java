@@ -0,0 +1,124 @@
+package infrastructure.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timer wheel for connection deadlines. Each timeout sits in the slot
+ * of the tick it is next due to be looked at, so adding one and expiring it
+ * are O(1) however many connections are open.
+ *
+ * <p>Deadlines are read lazily: a connection moves its own deadline with a
+ * plain write and never touches the wheel, which reads it again when the slot
+ * comes up and puts the timeout further on if it has moved. Timeouts are
+ * looked at again at least every {@code horizon} ms, so a deadline is seen in
+ * time as long as it is never set to less than {@code horizon} ms from when
+ * it is set.
+ *
+ * <p>Timeouts may be added from any thread, the wheel is advanced by the one
+ * thread that owns it.
+ */
+public class TimerWheel {
+    public static final long DEFAULT_TICK = 100;
+    public static final int DEFAULT_SLOTS = 512;
+
+    public interface Timeout {
+        // Milliseconds since the epoch, Long.MAX_VALUE for none
+        long getDeadline();
+
+        // A cancelled timeout is dropped the next time the wheel comes across it
+        boolean isCancelled();
+
+        // Called on the thread advancing the wheel, the timeout is off the wheel afterwards
+        void expire();
+    }
+
+    private static final class Node {
+        private final Timeout timeout;
+        private long dueTick;
+        private Node next;
+
+        private Node(Timeout timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    private final long tick;
+    private final long horizon;
+    private final Node[] slots;
+    private final int mask;
+    private final Queue<Node> added = new ConcurrentLinkedQueue<>();
+    // Next tick to expire, every earlier one has been
+    private long currentTick;
+
+    public TimerWheel(long tick, int slots, long horizon) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + slots);
+        }
+        this.tick = tick;
+        this.horizon = Math.max(horizon, tick);
+        this.slots = new Node[slots];
+        this.mask = slots - 1;
+        this.currentTick = System.currentTimeMillis() / tick;
+    }
+
+    public void add(Timeout timeout) {
+        added.add(new Node(timeout));
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Expires every timeout whose deadline has passed by {@code now}, late by
+     * at most one tick. Only called by the thread that owns the wheel.
+     */
+    public void advance(long now) {
+        Node node;
+        while ((node = added.poll()) != null) {
+            place(node, now);
+        }
+
+        long nowTick = now / tick;
+        for (; currentTick <= nowTick; currentTick++) {
+            int index = (int) (currentTick & mask);
+            node = slots[index];
+            slots[index] = null;
+            while (node != null) {
+                Node next = node.next;
+                visit(node, index, now);
+                node = next;
+            }
+        }
+    }
+
+    private void visit(Node node, int index, long now) {
+        if (node.timeout.isCancelled()) {
+            return;
+        }
+        if (node.dueTick > currentTick) {
+            // Due in a later round of the wheel
+            push(node, index);
+            return;
+        }
+
+        if (node.timeout.getDeadline() <= now) {
+            node.timeout.expire();
+        } else {
+            place(node, now);
+        }
+    }
+
+    // Puts the node in the slot of the first tick at or after its deadline, or the horizon if sooner
+    private void place(Node node, long now) {
+        long due = Math.min(node.timeout.getDeadline(), now + horizon);
+        node.dueTick = Math.max((due + tick - 1) / tick, currentTick);
+        push(node, (int) (node.dueTick & mask));
+    }
+
+    private void push(Node node, int index) {
+        node.next = slots[index];
+        slots[index] = node;
+    }
+}
@@ -0,0 +1,197 @@
+package infrastructure.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import domain.model.FileRegion;
+import domain.model.Response;
+import infrastructure.container.Container;
+import infrastructure.http.ResponseSerializer;
+import infrastructure.metrics.ServerMetrics;
+
+/**
+ * Bytes waiting to be written to one connection, in order. Consecutive
+ * buffers, such as a head and its body, go out in a single gathering write, file bodies are transferred
+ * straight from their channel and streaming bodies are written as their
+ * chunks are produced.
+ */
+public class WriteQueue implements Closeable {
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private ByteBuffer[] gather = new ByteBuffer[8];
+    private final BufferPool pool;
+    private final Runnable onBodyAvailable;
+    private final ServerMetrics metrics = Container.getOrCreate(ServerMetrics.class);
+    // Pooled buffer the heads of queued responses are serialized into, held until they are written
+    private ByteBuffer heads;
+    private boolean waitingForBody = false;
+
+    public WriteQueue(BufferPool pool) {
+        this(pool, null);
+    }
+
+    // The listener is called from another thread when a streaming body the queue was waiting on can be written
+    public WriteQueue(BufferPool pool, Runnable onBodyAvailable) {
+        this.pool = pool;
+        this.onBodyAvailable = onBodyAvailable;
+    }
+
+    /**
+     * Queues the response and recycles it: everything it holds that is still
+     * needed, such as its body or files, is now referenced by the queue.
+     */
+    public void add(Response response) {
+        addHead(response, ResponseSerializer.bodyLength(response));
+
+        if (response.hasFileBody()) {
+            for (FileRegion region : response.getFileBody()) {
+                if (region.getPreamble() != null) {
+                    pending.add(ByteBuffer.wrap(region.getPreamble()));
+                }
+                pending.add(region);
+                if (region.getEpilogue() != null) {
+                    pending.add(ByteBuffer.wrap(region.getEpilogue()));
+                }
+            }
+        }
+        if (response.hasStreamingBody()) {
+            pending.add(new ResponseStream(response.getStreamingBody(), response.isChunked(), onBodyAvailable));
+        }
+        response.recycle();
+    }
+
+    /**
+     * Serializes the head into the pooled buffer, followed by the body when it
+     * fits too so a small response goes out as a single buffer. Heads that do
+     * not fit, or all of them once the pool is used up, get a heap buffer of
+     * their own.
+     */
+    private void addHead(Response response, int bodyLength) {
+        if (heads == null && pool != null) {
+            heads = pool.acquire();
+        }
+
+        int start = heads != null ? heads.position() : 0;
+        if (heads != null && ResponseSerializer.writeHead(response, bodyLength, heads)) {
+            boolean bodyFits = bodyLength <= heads.remaining();
+            if (bodyFits) {
+                ResponseSerializer.writeBody(response, heads);
+            }
+            pending.add(heads.slice(start, heads.position() - start));
+            if (bodyFits) {
+                return;
+            }
+        } else {
+            pending.add(ResponseSerializer.head(response, bodyLength));
+        }
+
+        ByteBuffer body = ResponseSerializer.body(response);
+        if (body != null) {
+            pending.add(body);
+        }
+    }
+
+    // Bytes sent outside of a response, such as 100 Continue
+    public void add(ByteBuffer buffer) {
+        pending.add(buffer);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Writes until the queue is empty or the channel stops accepting bytes,
+     * which only happens for non-blocking channels. Returns whether everything
+     * was written.
+     */
+    public boolean writeTo(SocketChannel channel) throws IOException {
+        waitingForBody = false;
+        long start = System.nanoTime();
+        long total = 0;
+        try {
+            while (!pending.isEmpty()) {
+                long written;
+                if (pending.peek() instanceof ResponseStream stream) {
+                    written = stream.writeTo(channel);
+                    if (stream.isComplete()) {
+                        pending.poll();
+                    } else if (stream.isWaitingForChunk()) {
+                        waitingForBody = true;
+                        total += written;
+                        return false;
+                    }
+                } else if (pending.peek() instanceof FileRegion region) {
+                    written = region.transferTo(channel);
+                    if (!region.hasRemaining()) {
+                        pending.poll();
+                    }
+                } else {
+                    written = writeBuffers(channel);
+                }
+
+                total += written;
+                if (written == 0 && !channel.isBlocking()) {
+                    return false;
+                }
+            }
+            releaseHeads();
+            return true;
+        } finally {
+            if (total > 0) {
+                metrics.onWritten(total, start);
+            }
+        }
+    }
+
+    // Whether the last writeTo stopped on a streaming body that is still being produced
+    public boolean isWaitingForBody() {
+        return waitingForBody;
+    }
+
+    private long writeBuffers(SocketChannel channel) throws IOException {
+        int count = 0;
+        for (Object item : pending) {
+            if (!(item instanceof ByteBuffer buffer)) {
+                break;
+            }
+            if (count == gather.length) {
+                gather = Arrays.copyOf(gather, count * 2);
+            }
+            gather[count++] = buffer;
+        }
+
+        long written = channel.write(gather, 0, count);
+        Arrays.fill(gather, 0, count, null);
+        while (pending.peek() instanceof ByteBuffer buffer && !buffer.hasRemaining()) {
+            pending.poll();
+        }
+        return written;
+    }
+
+    // Releases the files and stops the producers of responses that will no longer be sent
+    @Override
+    public void close() throws IOException {
+        for (Object item : pending) {
+            if (item instanceof FileRegion region) {
+                region.close();
+            } else if (item instanceof ResponseStream stream) {
+                stream.cancel();
+            }
+        }
+        pending.clear();
+        releaseHeads();
+    }
+
+    // Only once nothing queued points into the buffer
+    private void releaseHeads() {
+        if (heads != null) {
+            pool.release(heads);
+            heads = null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package infrastructure.server.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import infrastructure.container.Container;
+import infrastructure.http.HttpRequestParser;
+import infrastructure.logging.AccessLog;
+import infrastructure.metrics.ServerMetrics;
+import infrastructure.server.BufferPool;
+import infrastructure.server.ConnectionState;
+import infrastructure.server.TimerWheel;
+
+/**
+ * Selector loop that owns every connection registered to it. All reads,
+ * request handling and writes of those connections run on this thread, and
+ * their timeouts are kept in a {@link TimerWheel} it advances every tick.
+ */
+public class EventLoop implements Runnable, Closeable {
+    private static final Logger logger = LogManager.getLogger(EventLoop.class);
+    private static final int MAX_IDLE_READ_BUFFERS = 64;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<SelectionKey> resumedKeys = new ConcurrentLinkedQueue<>();
+    private final Runnable onConnectionClosed;
+    private final BooleanSupplier draining;
+    private final Configuration configuration;
+    private final Executor pipelineExecutor;
+    private final BufferPool bufferPool;
+    private final AccessLog accessLog;
+    private final ServerMetrics metrics;
+    private final TimerWheel timeouts;
+    // Read buffers of connections that went idle, only touched on this thread
+    private final Deque<ByteBuffer> readBuffers = new ArrayDeque<>();
+    private volatile boolean running = true;
+
+    public EventLoop(int id, Configuration configuration, Executor pipelineExecutor, BooleanSupplier draining,
+            Runnable onConnectionClosed) throws IOException {
+        this.selector = Selector.open();
+        this.configuration = configuration;
+        this.pipelineExecutor = pipelineExecutor;
+        this.draining = draining;
+        this.onConnectionClosed = onConnectionClosed;
+        this.bufferPool = Container.getOrCreate(BufferPool.class, configuration);
+        this.accessLog = Container.getOrCreate(AccessLog.class, configuration);
+        this.metrics = Container.getOrCreate(ServerMetrics.class);
+        this.timeouts = new TimerWheel(TimerWheel.DEFAULT_TICK, TimerWheel.DEFAULT_SLOTS,
+                ConnectionState.getHorizon(configuration));
+        this.thread = Thread.ofPlatform().name("Event-Loop-" + id).unstarted(this);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Called from the acceptor thread
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    // Called from pipeline threads once a connection's responses are ready
+    public void resume(SelectionKey key) {
+        resumedKeys.add(key);
+        selector.wakeup();
+    }
+
+    // Called when the server starts draining
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Called on this thread by a connection that has bytes to read
+    public ByteBuffer acquireReadBuffer() {
+        ByteBuffer buffer = readBuffers.poll();
+        return buffer != null ? buffer : HttpRequestParser.allocateBuffer();
+    }
+
+    // Called on this thread by a connection with nothing buffered, grown buffers are left to the GC
+    public void releaseReadBuffer(ByteBuffer buffer) {
+        if (buffer.capacity() == HttpRequestParser.INITIAL_BUFFER_SIZE && readBuffers.size() < MAX_IDLE_READ_BUFFERS) {
+            readBuffers.push(buffer.clear());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(timeouts.getTick());
+                registerPendingChannels();
+                resumeConnections();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    processKey(key);
+                }
+
+                timeouts.advance(System.currentTimeMillis());
+                if (draining.getAsBoolean()) {
+                    closeIdle();
+                }
+            } catch (IOException e) {
+                logger.error("IOException in event loop: {}", e.getMessage());
+            }
+        }
+
+        closeAll();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                NioConnection connection = new NioConnection(channel, key, this, configuration, pipelineExecutor,
+                        draining);
+                key.attach(connection);
+                timeouts.add(connection.getState());
+            } catch (IOException e) {
+                logger.error("Failed to register connection: {}", e.getMessage());
+                closeChannel(channel);
+            }
+        }
+    }
+
+    private void resumeConnections() {
+        SelectionKey key;
+        while ((key = resumedKeys.poll()) != null) {
+            if (!key.isValid()) {
+                continue;
+            }
+
+            NioConnection connection = (NioConnection) key.attachment();
+            try {
+                connection.onResume();
+            } catch (IOException | CancelledKeyException e) {
+                logger.debug("Closing connection after error: {}", e.getMessage());
+                connection.close();
+            }
+            cleanUp(key, connection);
+        }
+    }
+
+    private void processKey(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        // Closed earlier in this iteration, by a resumed write or an expired timeout
+        if (!key.isValid()) {
+            cleanUp(key, connection);
+            return;
+        }
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            logger.debug("Closing connection after error: {}", e.getMessage());
+            connection.close();
+        }
+        cleanUp(key, connection);
+    }
+
+    // Closes connections waiting for their next request while the server is draining
+    private void closeIdle() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof NioConnection connection && connection.isIdle()) {
+                connection.close();
+                cleanUp(key, connection);
+            }
+        }
+    }
+
+    // Gives the connection's slot back once, however many times it is seen closed
+    void cleanUp(SelectionKey key, NioConnection connection) {
+        if (!connection.isOpen() && connection.markReleased()) {
+            key.cancel();
+            onConnectionClosed.run();
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof NioConnection connection) {
+                connection.close();
+                cleanUp(key, connection);
+            }
+        }
+
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            closeChannel(channel);
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Failed to close selector: {}", e.getMessage());
+        }
+    }
+
+    private void closeChannel(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close channel: {}", e.getMessage());
+        }
+        onConnectionClosed.run();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+}
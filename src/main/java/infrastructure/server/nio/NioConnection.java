@@ -0,0 +1,375 @@
+package infrastructure.server.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import domain.model.Request;
+import infrastructure.http.BodyDecoder;
+import infrastructure.http.HttpRequestParser;
+import infrastructure.http.exceptions.HttpParseException;
+import infrastructure.metrics.ServerMetrics;
+import infrastructure.server.ConnectionState;
+import infrastructure.server.ResponseQueue;
+import infrastructure.server.WriteQueue;
+
+/**
+ * State of one non-blocking connection: the read buffer requests are parsed
+ * from incrementally and the queue of response bytes waiting to be written.
+ */
+public class NioConnection {
+    private static final Logger logger = LogManager.getLogger(NioConnection.class);
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final EventLoop eventLoop;
+    private final WriteQueue pendingWrites;
+    private final HttpRequestParser parser;
+    private final ResponseQueue responses;
+    private final long maxDiscardedBody;
+    private final ConnectionState state;
+    private final ServerMetrics metrics;
+    // Taken from the event loop when bytes arrive and handed back while the connection is idle
+    private ByteBuffer readBuffer;
+    private boolean closeAfterWrite = false;
+    private boolean awaitingResponses = false;
+    // Set once the event loop has given back the slot of the closed connection
+    private boolean released = false;
+    // Request held back until the batch before it is written, because its body follows in the stream
+    private Request streamedRequest;
+    private BodyDecoder streamedDecoder;
+    private NioRequestBody body;
+
+    public NioConnection(SocketChannel channel, SelectionKey key, EventLoop eventLoop, Configuration configuration,
+            Executor pipelineExecutor, BooleanSupplier draining) {
+        this.channel = channel;
+        this.key = key;
+        this.eventLoop = eventLoop;
+        this.pendingWrites = new WriteQueue(eventLoop.getBufferPool(), () -> eventLoop.resume(key));
+        this.parser = new HttpRequestParser(configuration);
+        this.responses = new ResponseQueue(pipelineExecutor, parser::recycle, eventLoop.getAccessLog());
+        this.maxDiscardedBody = configuration.getMaxBodySize();
+        this.state = new ConnectionState(configuration, draining, this::onTimeout);
+        this.metrics = eventLoop.getMetrics();
+        // Registered for reads, so the idle clock runs from the start
+        state.startWaiting(System.currentTimeMillis());
+    }
+
+    public void onReadable() throws IOException {
+        if (readBuffer == null) {
+            readBuffer = eventLoop.acquireReadBuffer();
+        }
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            if (body == null) {
+                close();
+                return;
+            }
+            // Let the handler fail on the truncated body and answer before closing
+            body.fail(new EOFException("Connection closed before the end of the request body"));
+            closeAfterWrite = true;
+            feedBody();
+            return;
+        }
+
+        metrics.onRead(read);
+        state.onActivity(System.currentTimeMillis());
+        if (body != null) {
+            feedBody();
+            return;
+        }
+        readBuffer.flip();
+        processRequests();
+    }
+
+    // Parses and dispatches the requests in the read buffer, which is in read mode
+    private void processRequests() throws IOException {
+        try {
+            Request request;
+            while (!closeAfterWrite && streamedRequest == null && (request = parse()) != null) {
+                logger.debug("Request: {}", request);
+                boolean last = !state.admit(request);
+                BodyDecoder decoder = parser.takeStreamedBody();
+                if (decoder != null) {
+                    // Held until the responses before it are written, its body comes next in the stream.
+                    // The read buffer is compacted meanwhile, so the request must not point into it
+                    request.detach();
+                    streamedRequest = request;
+                    streamedDecoder = decoder;
+                    break;
+                }
+
+                responses.add(request);
+                closeAfterWrite = last;
+            }
+            if (streamedRequest == null && readBuffer.hasRemaining() && parser.isReadingHead()) {
+                state.onPartialHead(System.currentTimeMillis());
+            }
+        } catch (HttpParseException e) {
+            metrics.onParseError();
+            logger.warn("Rejecting request: {}", e.getMessage());
+            responses.add(e.toResponse());
+            closeAfterWrite = true;
+        }
+
+        responses.dispatch();
+        if (responses.isDone()) {
+            completeBatch();
+            return;
+        }
+
+        // Pipelined requests are still running on the executor and point into the
+        // read buffer, so stop reading until they are done
+        awaitResponses();
+    }
+
+    private Request parse() {
+        long start = System.nanoTime();
+        Request request = parser.parse(readBuffer);
+        if (request != null) {
+            metrics.onParsed(start);
+        }
+        return request;
+    }
+
+    private void awaitResponses() {
+        awaitingResponses = true;
+        updateInterest();
+        responses.whenDone().whenComplete((ignored, error) -> eventLoop.resume(key));
+    }
+
+    public void onWritable() throws IOException {
+        state.onActivity(System.currentTimeMillis());
+        flush();
+    }
+
+    ConnectionState getState() {
+        return state;
+    }
+
+    /**
+     * Run by the event loop's timer wheel. Only a connection waiting on the
+     * client can time out, the clock does not run while a handler is busy.
+     */
+    private void onTimeout() {
+        if (body != null) {
+            body.fail(new IOException("Timed out reading the request body"));
+            close();
+        } else if (state.isReadingHead() && !closeAfterWrite && !awaitingResponses) {
+            // Tell a client that stopped halfway through a request head why the connection closes
+            logger.warn("Request head not received within the header timeout");
+            pendingWrites.add(new HttpParseException(408, "Request Timeout").toResponse());
+            try {
+                pendingWrites.writeTo(channel);
+            } catch (IOException e) {
+                logger.debug("Failed to write timeout response: {}", e.getMessage());
+            }
+            close();
+        } else {
+            logger.debug("Closing idle connection after {} requests", state.getRequests());
+            close();
+        }
+        eventLoop.cleanUp(key, this);
+    }
+
+    // Waiting for the next request with nothing buffered, nothing running and nothing left to write
+    public boolean isIdle() {
+        return (readBuffer == null || readBuffer.position() == 0) && body == null && streamedRequest == null
+                && !awaitingResponses && pendingWrites.isEmpty();
+    }
+
+    // Called on the event loop once every response of the current batch is ready, when a
+    // streaming response has more to write, or when the handler of a streamed body needs bytes
+    public void onResume() throws IOException {
+        if (body != null) {
+            if (body.takeContinueRequest()) {
+                pendingWrites.add(ByteBuffer.wrap(BodyDecoder.CONTINUE_RESPONSE));
+            }
+            feedBody();
+            if (!isOpen()) {
+                return;
+            }
+        }
+
+        if (awaitingResponses && responses.isDone()) {
+            awaitingResponses = false;
+            completeBatch();
+            return;
+        }
+        flush();
+    }
+
+    private void completeBatch() throws IOException {
+        responses.drain(pendingWrites);
+        // The idle clock starts over once the client has its answers
+        state.onActivity(System.currentTimeMillis());
+        if (responses.isCloseRequested()) {
+            closeAfterWrite = true;
+        }
+
+        boolean bodyEnded = false;
+        if (body != null) {
+            // The buffer stays in write mode while a body is read, it was compacted as it was fed
+            bodyEnded = finishBody();
+        } else {
+            // Requests point into the buffer, so only compact once they have all been handled
+            readBuffer = parser.ensureCapacity(readBuffer.compact());
+        }
+
+        flush();
+        if (!isOpen() || closeAfterWrite) {
+            return;
+        }
+        if (streamedRequest != null) {
+            startStreamedRequest();
+        } else if (body != null) {
+            // Drop what is already buffered of a body the handler did not read
+            feedBody();
+        } else if (bodyEnded) {
+            processBuffered();
+        }
+    }
+
+    // Dispatches the held request on its own thread, the event loop feeds it the body
+    private void startStreamedRequest() throws IOException {
+        Request request = streamedRequest;
+        streamedRequest = null;
+        body = new NioRequestBody(streamedDecoder, request.isContinueExpected(), () -> eventLoop.resume(key));
+        streamedDecoder = null;
+        request.setBodyStream(body);
+
+        responses.add(request);
+        responses.dispatch();
+        awaitResponses();
+        feedBody();
+    }
+
+    /**
+     * Called once the handler of a streamed body has answered. Returns whether
+     * the body is over, otherwise the rest of it is read and dropped so the
+     * connection can be reused.
+     */
+    private boolean finishBody() {
+        if (body.isFinished()) {
+            endBody();
+            return true;
+        }
+        if (body.isContinuePending()) {
+            // The client is still waiting to send it
+            closeAfterWrite = true;
+            body = null;
+            return true;
+        }
+        body.abandon();
+        return false;
+    }
+
+    private void endBody() {
+        if (!body.isComplete() || body.getDiscarded() > maxDiscardedBody) {
+            closeAfterWrite = true;
+        }
+        body = null;
+    }
+
+    // Takes body bytes from the read buffer, which is in write mode before and after
+    private void feedBody() throws IOException {
+        readBuffer.flip();
+        body.feed(readBuffer);
+        readBuffer = parser.ensureCapacity(readBuffer.compact());
+
+        if (!awaitingResponses && (body.isFinished() || body.getDiscarded() > maxDiscardedBody)) {
+            endBody();
+            if (closeAfterWrite) {
+                flush();
+            } else {
+                processBuffered();
+            }
+            return;
+        }
+        updateInterest();
+    }
+
+    // Parses requests that arrived right after a streamed body
+    private void processBuffered() throws IOException {
+        if (readBuffer == null || readBuffer.position() == 0) {
+            updateInterest();
+            return;
+        }
+        readBuffer.flip();
+        processRequests();
+    }
+
+    private void flush() throws IOException {
+        if (pendingWrites.writeTo(channel) && closeAfterWrite && !awaitingResponses) {
+            close();
+            return;
+        }
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        releaseIdleBuffer();
+        if (!key.isValid()) {
+            return;
+        }
+
+        int ops = 0;
+        if (!pendingWrites.isEmpty() && !pendingWrites.isWaitingForBody()) {
+            // Socket buffer is full, wait until the client catches up. A streaming body that
+            // is behind resumes the connection itself
+            ops |= SelectionKey.OP_WRITE;
+        }
+        if (body != null ? body.wantsBytes() : !awaitingResponses && pendingWrites.isEmpty() && !closeAfterWrite) {
+            ops |= SelectionKey.OP_READ;
+        }
+        key.interestOps(ops);
+        if (ops == 0) {
+            state.stopWaiting();
+        } else if (!state.isWaiting()) {
+            state.startWaiting(System.currentTimeMillis());
+        }
+    }
+
+    // Keep-alive connections spend most of their time waiting, so they do not keep a buffer meanwhile
+    private void releaseIdleBuffer() {
+        if (readBuffer != null && readBuffer.position() == 0 && body == null && streamedRequest == null
+                && !awaitingResponses) {
+            eventLoop.releaseReadBuffer(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    // True the first time only, called on the event loop thread once the connection is closed
+    boolean markReleased() {
+        if (released) {
+            return false;
+        }
+        released = true;
+        return true;
+    }
+
+    public void close() {
+        state.close();
+        if (body != null) {
+            body.fail(new EOFException("Connection closed"));
+        }
+        // Closing the write queue releases any file still being sent
+        try (pendingWrites) {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package infrastructure.server.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import infrastructure.http.BodyDecoder;
+import infrastructure.http.exceptions.HttpParseException;
+
+/**
+ * Streamed request body on a non-blocking connection. The event loop decodes
+ * body bytes from the read buffer into a queue of {@link #MAX_CHUNKS} chunks
+ * and stops reading the socket while it is full, and the handler reads them on
+ * its own thread. Either side wakes the connection through the listener when
+ * the event loop has something to do: room in the queue or a 100 Continue to
+ * send.
+ */
+public class NioRequestBody extends InputStream {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_CHUNKS = 4;
+    private static final byte[] END = new byte[0];
+    private static final byte[] FAILED = new byte[0];
+
+    private final BodyDecoder decoder;
+    private final Runnable listener;
+    // One slot more than the data chunks, so the end or a failure can always be queued
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS + 1);
+    private final AtomicBoolean stalled = new AtomicBoolean();
+    private final AtomicBoolean continueRequested = new AtomicBoolean();
+    private volatile IOException failure;
+
+    // Event loop side
+    private boolean continuePending;
+    private boolean discarding = false;
+    private boolean finished = false;
+    private long discarded = 0;
+    private byte[] scratch;
+
+    // Handler side
+    private byte[] current;
+    private int position;
+    private boolean ended = false;
+
+    public NioRequestBody(BodyDecoder decoder, boolean expectContinue, Runnable listener) {
+        this.decoder = decoder;
+        this.continuePending = expectContinue;
+        this.listener = listener;
+    }
+
+    /**
+     * Called on the event loop with the read buffer in read mode. Takes as
+     * much of the body as the queue has room for, leaving anything after the
+     * body in the buffer.
+     */
+    public void feed(ByteBuffer buffer) {
+        try {
+            while (!finished && buffer.hasRemaining()) {
+                if (discarding) {
+                    discarded += decoder.decode(buffer, scratch, 0, scratch.length);
+                } else if (!offerChunk(buffer)) {
+                    return;
+                }
+
+                if (decoder.isComplete()) {
+                    finish(END, null);
+                }
+            }
+        } catch (HttpParseException e) {
+            fail(new IOException("Malformed request body: " + e.getMessage(), e));
+        }
+    }
+
+    private boolean offerChunk(ByteBuffer buffer) {
+        if (chunks.size() >= MAX_CHUNKS) {
+            return false;
+        }
+
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int decoded = decoder.decode(buffer, chunk, 0, chunk.length);
+        if (decoded > 0) {
+            chunks.add(decoded == chunk.length ? chunk : Arrays.copyOf(chunk, decoded));
+        }
+        return true;
+    }
+
+    // The connection closed or broke before the end of the body
+    public void fail(IOException error) {
+        if (!finished) {
+            finish(FAILED, error);
+        }
+    }
+
+    private void finish(byte[] marker, IOException error) {
+        finished = true;
+        failure = error;
+        if (!discarding) {
+            chunks.add(marker);
+        }
+    }
+
+    /**
+     * Called once the handler has returned: the rest of the body is read and
+     * dropped from now on so the connection can be reused.
+     */
+    public void abandon() {
+        discarding = true;
+        scratch = new byte[CHUNK_SIZE];
+        chunks.clear();
+    }
+
+    /**
+     * Whether the event loop should read more of the body from the socket.
+     * When the queue is full the handler resumes the connection once it has
+     * taken a chunk.
+     */
+    public boolean wantsBytes() {
+        if (finished || continuePending) {
+            return false;
+        }
+        if (discarding || chunks.size() < MAX_CHUNKS) {
+            return true;
+        }
+
+        stalled.set(true);
+        // Check again after raising the flag, in case the handler took one in between
+        if (chunks.size() < MAX_CHUNKS) {
+            stalled.set(false);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // Whether the body was read to the end without errors
+    public boolean isComplete() {
+        return finished && failure == null;
+    }
+
+    // A client still waiting for 100 Continue will not send the body, the connection cannot be reused
+    public boolean isContinuePending() {
+        return continuePending;
+    }
+
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    // Called on the event loop, returns whether 100 Continue has to be written now
+    public boolean takeContinueRequest() {
+        if (continuePending && continueRequested.get()) {
+            continuePending = false;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (ended) {
+            // Failures are thrown again, callers like FileChannel.transferFrom swallow the first one
+            return end();
+        }
+        if (length == 0) {
+            return 0;
+        }
+
+        if (current == null || position == current.length) {
+            if (continueRequested.compareAndSet(false, true)) {
+                listener.run();
+            }
+            current = take();
+            position = 0;
+            if (current == END || current == FAILED) {
+                ended = true;
+                return end();
+            }
+        }
+
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    private int end() throws IOException {
+        if (current == FAILED) {
+            throw failure != null ? failure : new EOFException("Request body failed");
+        }
+        return -1;
+    }
+
+    private byte[] take() throws IOException {
+        try {
+            byte[] chunk = chunks.take();
+            if (stalled.getAndSet(false)) {
+                listener.run();
+            }
+            return chunk;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while reading the request body");
+        }
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.length - position : 0;
+    }
+}
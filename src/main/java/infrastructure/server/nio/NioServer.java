@@ -0,0 +1,209 @@
+package infrastructure.server.nio;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import domain.model.Configuration;
+import domain.model.Controller;
+import infrastructure.api.Router;
+import infrastructure.container.Container;
+import infrastructure.logging.AccessLog;
+import infrastructure.metrics.ServerMetrics;
+import infrastructure.server.HttpServer;
+import infrastructure.server.Listener;
+import infrastructure.server.ResponseQueue;
+
+/**
+ * Non-blocking engine: each acceptor hands connections round-robin to its
+ * share of a fixed set of selector event loops, each of which owns its
+ * connections.
+ */
+public class NioServer implements HttpServer {
+    private static final Logger logger = LogManager.getLogger(NioServer.class);
+    private static final long DRAIN_POLL_INTERVAL = 50;
+    private static final long ACCEPT_RETRY_DELAY = 100;
+
+    private final Configuration configuration;
+    private final Listener listener;
+    private final EventLoop[] eventLoops;
+    private final Semaphore connectionPermits;
+    // Counted apart from the permits, which acceptors hold while still waiting in accept()
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ExecutorService pipelineExecutor;
+    private final AccessLog accessLog;
+    private final ServerMetrics metrics;
+    private volatile boolean draining = false;
+
+    public NioServer(Configuration configuration) throws IOException {
+        this.configuration = configuration;
+        this.listener = new Listener(configuration);
+
+        int loops = configuration.getEventLoops() != null && configuration.getEventLoops() > 0
+                ? configuration.getEventLoops()
+                : Runtime.getRuntime().availableProcessors();
+        this.pipelineExecutor = ResponseQueue.newPipelineExecutor(configuration);
+        this.accessLog = Container.getOrCreate(AccessLog.class, configuration);
+        this.metrics = Container.getOrCreate(ServerMetrics.class);
+        this.eventLoops = new EventLoop[loops];
+        for (int i = 0; i < loops; i++) {
+            eventLoops[i] = new EventLoop(i, configuration, pipelineExecutor, () -> draining,
+                    this::onConnectionClosed);
+        }
+
+        this.connectionPermits = new Semaphore(Math.max(1, configuration.getMaxConnections()));
+        metrics.registerConnections(this::getOpenConnections, listener::getAcceptQueueLength);
+        logger.info("NIO server created on port {} with {} event loops serving files from {}",
+                configuration.getPort(),
+                loops,
+                configuration.getDirectory());
+    }
+
+    @Override
+    public void start(boolean reuseAddress) {
+        try {
+            listener.bind(reuseAddress);
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.start();
+            }
+
+            listener.acceptAll(this::handleConnections);
+            if (draining) {
+                awaitDrained();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to start server: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void registerControllers(List<Controller> controllers) {
+        Router.registerControllers(controllers);
+    }
+
+    // Accept loop of one listening socket, feeding the loops whose index matches it modulo the acceptors
+    private void handleConnections(ServerSocketChannel serverChannel, int acceptor) throws IOException {
+        int first = acceptor % eventLoops.length;
+        int step = Math.min(listener.size(), eventLoops.length);
+        int nextLoop = first;
+        while (serverChannel.isOpen()) {
+            try {
+                connectionPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                connectionPermits.release();
+                return;
+            } catch (IOException e) {
+                // Out of file descriptors or an aborted handshake, the socket itself is still listening
+                connectionPermits.release();
+                logger.error("Failed to accept connection: {}", e.getMessage());
+                try {
+                    Thread.sleep(ACCEPT_RETRY_DELAY);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            openConnections.incrementAndGet();
+            metrics.onAccepted();
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                // Reset before it reached a loop, nothing else holds the channel yet
+                logger.debug("Dropping connection: {}", e.getMessage());
+                closeQuietly(channel);
+                onConnectionClosed();
+                continue;
+            }
+            logger.debug("Accepted new connection from {}", channel.socket().getRemoteSocketAddress());
+            eventLoops[nextLoop].register(channel);
+            nextLoop += step;
+            if (nextLoop >= eventLoops.length) {
+                nextLoop = first;
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close connection: {}", e.getMessage());
+        }
+    }
+
+    private void onConnectionClosed() {
+        openConnections.decrementAndGet();
+        connectionPermits.release();
+    }
+
+    @Override
+    public void drain() {
+        logger.info("Draining {} connections", getOpenConnections());
+        draining = true;
+        try {
+            listener.close();
+        } catch (IOException e) {
+            logger.error("Failed to close server channel: {}", e.getMessage());
+        }
+        // Each loop closes its idle connections, and the others once their last response is written
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.wakeup();
+        }
+    }
+
+    // Waits for the connections left open by drain(), close() ends the rest
+    private void awaitDrained() {
+        long deadline = System.currentTimeMillis() + configuration.getDrainTimeout();
+        try {
+            while (getOpenConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(DRAIN_POLL_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (getOpenConnections() > 0) {
+            logger.warn("Drain timeout passed, closing {} connections", getOpenConnections());
+        } else {
+            logger.info("All connections drained");
+        }
+    }
+
+    private int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            listener.close();
+        } finally {
+            for (EventLoop eventLoop : eventLoops) {
+                eventLoop.close();
+            }
+            if (pipelineExecutor != null) {
+                pipelineExecutor.close();
+            }
+            accessLog.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package domain.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HeaderMapTest {
+
+    @Test
+    void findsNamesIgnoringCase() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("Content-Type", "text/plain");
+        headers.add("X-Custom", "a");
+
+        assertEquals("text/plain", headers.get("content-type"));
+        assertEquals("a", headers.get("X-CUSTOM"));
+        assertNull(headers.get("X-Other"));
+    }
+
+    @Test
+    void keepsDuplicatesInOrder() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("Set-Cookie", "a=1");
+        headers.add("X-A", "x");
+        headers.add("set-cookie", "b=2");
+
+        assertEquals(List.of("a=1", "b=2"), headers.getAll("Set-Cookie"));
+        assertEquals("a=1", headers.get("Set-Cookie"));
+        assertTrue(headers.contains("Set-Cookie", "B=2"));
+    }
+
+    @Test
+    void removeKeepsFieldsAfterTheRemovedOne() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("Content-Length", "10");
+        headers.add("Set-Cookie", "a=1");
+        headers.add("Set-Cookie", "b=2");
+
+        assertEquals(1, headers.remove("Content-Length"));
+
+        assertFalse(headers.contains("Content-Length"));
+        assertEquals(List.of("a=1", "b=2"), headers.getAll("Set-Cookie"));
+        assertEquals(2, headers.size());
+    }
+
+    @Test
+    void removeDropsInterleavedDuplicates() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("X-A", "1");
+        headers.add("X-B", "2");
+        headers.add("X-A", "3");
+
+        assertEquals(2, headers.remove("x-a"));
+
+        assertFalse(headers.contains("X-A"));
+        assertEquals("2", headers.get("X-B"));
+        assertEquals(1, headers.size());
+    }
+
+    @Test
+    void removeOfRawFields() {
+        byte[] source = "X-A: 1\r\nX-B: 2\r\nx-a: 3\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        HeaderMap headers = new HeaderMap();
+        headers.addRaw(source, 0, 3, 5, 6);
+        headers.addRaw(source, 8, 11, 13, 14);
+        headers.addRaw(source, 16, 19, 21, 22);
+
+        assertEquals(2, headers.remove("X-A"));
+
+        assertFalse(headers.contains("X-A"));
+        assertEquals("2", headers.get("X-B"));
+        assertEquals("X-B", headers.nameAt(0));
+    }
+
+    @Test
+    void setReplacesEveryDuplicate() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("Connection", "keep-alive");
+        headers.add("Set-Cookie", "a=1");
+        headers.add("Connection", "upgrade");
+
+        headers.set("Connection", "close");
+
+        assertEquals(List.of("close"), headers.getAll("Connection"));
+        assertEquals(List.of("a=1"), headers.getAll("Set-Cookie"));
+    }
+
+    @Test
+    void setOfSingleFieldKeepsItsPosition() {
+        HeaderMap headers = new HeaderMap();
+        headers.add("Connection", "keep-alive");
+        headers.add("X-A", "1");
+
+        headers.set("connection", "close");
+
+        assertEquals("Connection", headers.nameAt(0));
+        assertEquals("close", headers.valueAt(0));
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        HeaderMap headers = new HeaderMap();
+        for (int i = 0; i < 40; i++) {
+            headers.add("X-" + i, String.valueOf(i));
+        }
+
+        for (int i = 0; i < 40; i++) {
+            assertEquals(String.valueOf(i), headers.get("x-" + i));
+        }
+        headers.clear();
+        assertTrue(headers.isEmpty());
+        assertNull(headers.get("X-1"));
+    }
+}
@@ -0,0 +1,140 @@
+package infrastructure.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import domain.model.Request;
+import enums.RequestMethod;
+
+class RouteTrieTest {
+    private static final Route NOT_FOUND = route(RequestMethod.GET, "/404");
+    private static final Route METHOD_NOT_ALLOWED = route(RequestMethod.GET, "/405");
+
+    private static Route route(RequestMethod method, String path) {
+        return Route.of(method, path, (request, output) -> null);
+    }
+
+    private static RouteTrie compile(Route... routes) {
+        return RouteTrie.compile(List.of(routes), NOT_FOUND, METHOD_NOT_ALLOWED);
+    }
+
+    private static Request request(RequestMethod method, String path) {
+        Request request = new Request();
+        request.setMethod(method);
+        request.setPath(path);
+        return request;
+    }
+
+    @Test
+    void staticRoutesWinOverParameters() {
+        Route root = route(RequestMethod.GET, "/");
+        Route me = route(RequestMethod.GET, "/users/me");
+        Route user = route(RequestMethod.GET, "/users/{id}");
+        RouteTrie trie = compile(root, me, user);
+
+        assertSame(root, trie.resolve(request(RequestMethod.GET, "/")));
+        assertSame(me, trie.resolve(request(RequestMethod.GET, "/users/me")));
+
+        Request request = request(RequestMethod.GET, "/users/42?full=true");
+        assertSame(user, trie.resolve(request));
+        assertEquals("42", request.getPathParam("id"));
+    }
+
+    @Test
+    void unknownPathsAreNotFound() {
+        RouteTrie trie = compile(route(RequestMethod.GET, "/users/{id}"));
+
+        assertSame(NOT_FOUND, trie.resolve(request(RequestMethod.GET, "/users")));
+        assertSame(NOT_FOUND, trie.resolve(request(RequestMethod.GET, "/users/42/posts")));
+        assertSame(NOT_FOUND, trie.resolve(request(RequestMethod.GET, "/other")));
+    }
+
+    @Test
+    void parameterNamesBelongToTheirRoute() {
+        Route byId = route(RequestMethod.GET, "/a/{id}");
+        Route byName = route(RequestMethod.POST, "/a/{name}");
+        RouteTrie trie = compile(byId, byName);
+
+        Request get = request(RequestMethod.GET, "/a/1");
+        assertSame(byId, trie.resolve(get));
+        assertEquals("1", get.getPathParam("id"));
+        assertNull(get.getPathParam("name"));
+
+        Request post = request(RequestMethod.POST, "/a/bob");
+        assertSame(byName, trie.resolve(post));
+        assertEquals("bob", post.getPathParam("name"));
+    }
+
+    @Test
+    void wrongMethodIsNotAllowed() {
+        RouteTrie trie = compile(route(RequestMethod.GET, "/files/{fileName}"),
+                route(RequestMethod.POST, "/files/{fileName}"));
+
+        assertSame(METHOD_NOT_ALLOWED, trie.resolve(request(RequestMethod.DELETE, "/files/a.txt")));
+        assertEquals("GET, POST", trie.allowedMethods("/files/a.txt"));
+        assertNull(trie.allowedMethods("/nothing"));
+    }
+
+    @Test
+    void staticRouteOfAnotherMethodFallsBackToParameter() {
+        Route file = route(RequestMethod.GET, "/files/{fileName}");
+        Route upload = route(RequestMethod.POST, "/files/upload");
+        RouteTrie trie = compile(file, upload);
+
+        Request get = request(RequestMethod.GET, "/files/upload");
+        assertSame(file, trie.resolve(get));
+        assertEquals("upload", get.getPathParam("fileName"));
+        assertSame(upload, trie.resolve(request(RequestMethod.POST, "/files/upload")));
+        assertSame(METHOD_NOT_ALLOWED, trie.resolve(request(RequestMethod.DELETE, "/files/upload")));
+        assertEquals("GET, POST", trie.allowedMethods("/files/upload"));
+    }
+
+    @Test
+    void wildcardsTakeTheRestOfThePath() {
+        Route echo = route(RequestMethod.GET, "/echo/{message*}");
+        RouteTrie trie = compile(echo);
+
+        Request request = request(RequestMethod.GET, "/echo/a/b");
+        assertSame(echo, trie.resolve(request));
+        assertEquals("a/b", request.getPathParam("message"));
+    }
+
+    @Test
+    void wildcardDoesNotMatchItsParentPath() {
+        Route echo = route(RequestMethod.GET, "/echo/{message*}");
+        assertSame(NOT_FOUND, compile(echo).resolve(request(RequestMethod.GET, "/echo")));
+
+        // The bare path needs a route of its own, which takes it whatever the registration order
+        Route bare = route(RequestMethod.GET, "/echo");
+        for (RouteTrie trie : List.of(compile(echo, bare), compile(bare, echo))) {
+            Request request = request(RequestMethod.GET, "/echo");
+            assertSame(bare, trie.resolve(request));
+            assertNull(request.getPathParam("message"));
+
+            Request below = request(RequestMethod.GET, "/echo/abc");
+            assertSame(echo, trie.resolve(below));
+            assertEquals("abc", below.getPathParam("message"));
+        }
+    }
+
+    @Test
+    void prefixRoutesMatchOnSegmentBoundaries() {
+        Route prefix = new Route.Builder()
+                .isSearchByStartsWith(true)
+                .setPath("/static")
+                .setMethod("GET")
+                .build();
+        RouteTrie trie = compile(prefix);
+
+        assertSame(prefix, trie.resolve(request(RequestMethod.GET, "/static")));
+        Request request = request(RequestMethod.GET, "/static/css/site.css");
+        assertSame(prefix, trie.resolve(request));
+        assertEquals("css/site.css", request.getPathParam("*"));
+        assertSame(NOT_FOUND, trie.resolve(request(RequestMethod.GET, "/statically")));
+    }
+}
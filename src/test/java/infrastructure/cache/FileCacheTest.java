@@ -0,0 +1,191 @@
+package infrastructure.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import domain.model.Configuration;
+
+class FileCacheTest {
+    @TempDir
+    Path directory;
+
+    private FileCache cache;
+
+    private FileCache cache(int maxBytes, int maxFileSize) {
+        Configuration configuration = new Configuration.Builder()
+                .directory(directory.toString())
+                .fileCacheMaxBytes(maxBytes)
+                .fileCacheMaxFileSize(maxFileSize)
+                .build();
+        cache = new FileCache(configuration);
+        return cache;
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    // Random bytes do not compress, so entries weigh exactly their size. Files are written
+    // before the cache starts watching, so its watcher does not drop them as changed
+    private Path file(String name, int size) throws IOException {
+        byte[] body = new byte[size];
+        new Random(name.hashCode()).nextBytes(body);
+        return Files.write(directory.resolve(name), body);
+    }
+
+    private FileCache.Entry load(Path path) throws IOException {
+        return cache.load(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    @Test
+    void servesLoadedFilesFromMemory() throws IOException {
+        Path path = file("a.bin", 300);
+        cache(10_000, 1_000);
+
+        assertNull(cache.get(path));
+        FileCache.Entry entry = load(path);
+
+        assertNotNull(entry);
+        assertArrayEquals(Files.readAllBytes(path), entry.getBody());
+        assertSame(entry, cache.get(path));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(300, cache.getSizeInBytes());
+    }
+
+    @Test
+    void leavesLargeFilesToBeStreamed() throws IOException {
+        Path path = file("big.bin", 2_000);
+        cache(10_000, 1_000);
+
+        assertNull(load(path));
+        assertNull(cache.get(path));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    void evictsProbationBeforeProtectedEntries() throws IOException {
+        Path hot = file("hot.bin", 300);
+        Path cold = file("cold.bin", 300);
+        Path other = file("other.bin", 300);
+        Path added = file("new.bin", 300);
+        cache(1_000, 1_000);
+
+        load(hot);
+        load(cold);
+        load(other);
+        // Hit again, so promoted out of probation
+        assertNotNull(cache.get(hot));
+
+        load(added);
+
+        assertNotNull(cache.get(hot));
+        assertNull(cache.get(cold));
+        assertNotNull(cache.get(other));
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getSizeInBytes() <= 1_000);
+    }
+
+    @Test
+    void scanOfColdFilesKeepsHotOnes() throws IOException {
+        Path hot = file("hot.bin", 200);
+        Path[] scan = new Path[20];
+        for (int i = 0; i < scan.length; i++) {
+            scan[i] = file("scan" + i + ".bin", 200);
+        }
+        cache(1_000, 1_000);
+        load(hot);
+        cache.get(hot);
+
+        for (Path path : scan) {
+            load(path);
+        }
+
+        assertNotNull(cache.get(hot));
+    }
+
+    @Test
+    void invalidatedEntriesAreDropped() throws IOException {
+        Path a = file("a.bin", 100);
+        Path b = file("b.bin", 100);
+        cache(10_000, 1_000);
+        load(a);
+        load(b);
+
+        cache.invalidate(a);
+        assertNull(cache.get(a));
+        assertNotNull(cache.get(b));
+        assertEquals(100, cache.getSizeInBytes());
+
+        cache.invalidateAll();
+        assertNull(cache.get(b));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    void changedFilesAreInvalidated() throws IOException, InterruptedException {
+        Path path = file("a.bin", 100);
+        cache(10_000, 1_000);
+        load(path);
+
+        Files.writeString(path, "changed");
+
+        // Dropped by the directory watcher, or by the mtime check where it is not available
+        long deadline = System.currentTimeMillis() + 10_000;
+        FileCache.Entry entry;
+        while ((entry = cache.get(path)) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNull(entry);
+    }
+
+    @Test
+    void existsAvoidsTheDiskForKnownFiles() throws IOException {
+        Path path = file("a.bin", 100);
+        cache(10_000, 1_000);
+        load(path);
+
+        assertTrue(cache.exists(path));
+        assertFalse(cache.exists(directory.resolve("missing.bin")));
+    }
+
+    @Test
+    void keepsTheGzipVariantOfCompressibleFiles() throws IOException {
+        Path path = Files.writeString(directory.resolve("a.txt"), "hello world ".repeat(500));
+        Path small = Files.writeString(directory.resolve("b.txt"), "tiny", StandardCharsets.US_ASCII);
+        cache(100_000, 10_000);
+
+        FileCache.Entry entry = load(path);
+
+        assertNotNull(entry.getGzipBody());
+        assertTrue(entry.getGzipBody().length < entry.getBody().length);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(entry.getGzipBody()))) {
+            assertArrayEquals(entry.getBody(), gzip.readAllBytes());
+        }
+        assertEquals(entry.getBody().length + entry.getGzipBody().length, cache.getSizeInBytes());
+        assertTrue(entry.getGzipEntityTag().endsWith("-gzip\""));
+
+        assertNull(load(small).getGzipBody());
+    }
+}
@@ -0,0 +1,112 @@
+package infrastructure.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import infrastructure.http.exceptions.HttpParseException;
+
+class BodyDecoderTest {
+
+    // Feeds each read in turn through a small target, as a handler reading the body would
+    private static String decode(BodyDecoder decoder, String... reads) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] target = new byte[4];
+        for (String read : reads) {
+            ByteBuffer source = ByteBuffer.wrap(read.getBytes(StandardCharsets.ISO_8859_1));
+            while (source.hasRemaining() && !decoder.isComplete()) {
+                int count = decoder.decode(source, target, 0, target.length);
+                body.write(target, 0, count);
+            }
+        }
+        return body.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static int statusOf(BodyDecoder decoder, String... reads) {
+        return assertThrows(HttpParseException.class, () -> decode(decoder, reads)).getStatusCode();
+    }
+
+    @Test
+    void decodesFixedLengthBodies() {
+        BodyDecoder decoder = BodyDecoder.fixed(5);
+
+        assertEquals("hello", decode(decoder, "hel", "loGET"));
+        assertTrue(decoder.isComplete());
+        assertEquals(5, decoder.getDecodedLength());
+    }
+
+    @Test
+    void decodesChunkedBodies() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+
+        assertEquals("hello world", decode(decoder, "5\r\nhello\r\n6\r\n world\r\n0\r\n\r\n"));
+        assertTrue(decoder.isComplete());
+        assertEquals(11, decoder.getDecodedLength());
+    }
+
+    @Test
+    void leavesTheNextRequestInTheBuffer() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+        ByteBuffer source = ByteBuffer.wrap("2\r\nab\r\n0\r\n\r\nGET".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(2, decoder.decode(source, new byte[16], 0, 16));
+        assertTrue(decoder.isComplete());
+        assertEquals(3, source.remaining());
+    }
+
+    @Test
+    void skipsChunkExtensions() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+
+        assertEquals("hello", decode(decoder, "5;name=\"value\"\r\nhello\r\n0; last\r\n\r\n"));
+        assertTrue(decoder.isComplete());
+    }
+
+    @Test
+    void dropsTrailerFields() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+
+        assertEquals("hello", decode(decoder, "5\r\nhello\r\n0\r\nChecksum: abc\r\nX-Other: 1\r\n\r\n"));
+        assertTrue(decoder.isComplete());
+    }
+
+    @Test
+    void resumesAChunkSizeSplitAcrossReads() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+        String data = "x".repeat(0x1a);
+
+        assertEquals(data, decode(decoder, "1", "a\r", "\n" + data.substring(0, 10), data.substring(10) + "\r", "\n0",
+                "\r\n", "\r\n"));
+        assertTrue(decoder.isComplete());
+    }
+
+    @Test
+    void waitsForTheTerminatingChunk() {
+        BodyDecoder decoder = BodyDecoder.chunked(1024);
+
+        assertEquals("hello", decode(decoder, "5\r\nhello\r\n"));
+        assertFalse(decoder.isComplete());
+    }
+
+    @Test
+    void rejectsInvalidChunkSizes() {
+        assertEquals(400, statusOf(BodyDecoder.chunked(1024), "5x\r\nhello\r\n0\r\n\r\n"));
+        assertEquals(400, statusOf(BodyDecoder.chunked(1024), "\r\nhello\r\n"));
+        // Data not followed by CRLF
+        assertEquals(400, statusOf(BodyDecoder.chunked(1024), "2\r\nabc\r\n"));
+    }
+
+    @Test
+    void rejectsBodiesOverTheLimit() {
+        assertEquals(413, statusOf(BodyDecoder.chunked(8), "5\r\nhello\r\n5\r\nworld\r\n0\r\n\r\n"));
+        // A size that would overflow is rejected before it does
+        assertEquals(413, statusOf(BodyDecoder.chunked(8), "fffffffffffffffff\r\n"));
+    }
+}
@@ -0,0 +1,72 @@
+package infrastructure.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest {
+
+    private static void assertRange(ByteRange range, long start, long end) {
+        assertEquals(start, range.getStart());
+        assertEquals(end, range.getEnd());
+    }
+
+    @Test
+    void parsesClosedAndOpenRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99", 1000);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 99);
+        assertEquals(100, ranges.get(0).getLength());
+        assertEquals("bytes 0-99/1000", ranges.get(0).toContentRange(1000));
+
+        assertRange(ByteRange.parse("bytes=900-", 1000).get(0), 900, 999);
+    }
+
+    @Test
+    void clampsEndToTheLength() {
+        assertRange(ByteRange.parse("bytes=500-5000", 1000).get(0), 500, 999);
+    }
+
+    @Test
+    void parsesSuffixRanges() {
+        assertRange(ByteRange.parse("bytes=-100", 1000).get(0), 900, 999);
+        // Longer than the representation: all of it
+        assertRange(ByteRange.parse("bytes=-5000", 1000).get(0), 0, 999);
+    }
+
+    @Test
+    void parsesMultipleRangesInOrder() {
+        List<ByteRange> ranges = ByteRange.parse("Bytes=0-9, 20-29,-5", 100);
+
+        assertEquals(3, ranges.size());
+        assertRange(ranges.get(0), 0, 9);
+        assertRange(ranges.get(1), 20, 29);
+        assertRange(ranges.get(2), 95, 99);
+    }
+
+    @Test
+    void dropsUnsatisfiableRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-9,2000-3000", 1000);
+        assertEquals(1, ranges.size());
+        assertRange(ranges.get(0), 0, 9);
+
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-10", 0).isEmpty());
+    }
+
+    @Test
+    void ignoresMalformedHeaders() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-9", 1000));
+        assertNull(ByteRange.parse("bytes=9-0", 1000));
+        assertNull(ByteRange.parse("bytes=abc", 1000));
+        assertNull(ByteRange.parse("bytes=1-x", 1000));
+        assertNull(ByteRange.parse("bytes=0-1,2-3,4-5,6-7,8-9,10-11,12-13,14-15,16-17,18-19,20-21,22-23,24-25,"
+                + "26-27,28-29,30-31,32-33", 1000));
+    }
+}
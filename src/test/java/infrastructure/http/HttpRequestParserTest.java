@@ -0,0 +1,163 @@
+package infrastructure.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import domain.model.Request;
+import enums.RequestMethod;
+import infrastructure.http.exceptions.HttpParseException;
+
+class HttpRequestParserTest {
+    private final HttpRequestParser parser = new HttpRequestParser(100, 8192, 1024, 1024 * 1024);
+
+    private static ByteBuffer buffer(String content) {
+        ByteBuffer buffer = HttpRequestParser.allocateBuffer();
+        buffer.put(content.getBytes(StandardCharsets.ISO_8859_1));
+        return buffer.flip();
+    }
+
+    // A parser that failed is not used again, the connection is closed
+    private static int statusOf(HttpRequestParser parser, String content) {
+        return assertThrows(HttpParseException.class, () -> parser.parse(buffer(content))).getStatusCode();
+    }
+
+    private static int statusOf(String content) {
+        return statusOf(new HttpRequestParser(100, 8192, 1024, 1024 * 1024), content);
+    }
+
+    @Test
+    void parsesRequestLineHeadersAndBody() {
+        ByteBuffer buffer = buffer("POST /files/a.txt?x=1 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n"
+                + "X-Empty:\r\n\r\nhello");
+
+        Request request = parser.parse(buffer);
+
+        assertNotNull(request);
+        assertEquals(RequestMethod.POST, request.getMethod());
+        assertEquals("/files/a.txt?x=1", request.getPath());
+        assertEquals("HTTP/1.1", request.getVersion());
+        assertEquals("localhost", request.getHeader("host"));
+        assertEquals("", request.getHeader("X-Empty"));
+        assertEquals("hello", request.getBody());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void resumesRequestSplitOverReads() {
+        String full = "GET /echo/abc HTTP/1.1\r\nHost: localhost\r\nUser-Agent: test\r\n\r\n";
+        ByteBuffer buffer = HttpRequestParser.allocateBuffer();
+
+        // Fed a few bytes at a time, compacted between reads as the connections do
+        for (int i = 0; i < full.length(); i += 7) {
+            buffer.put(full.substring(i, Math.min(full.length(), i + 7)).getBytes(StandardCharsets.ISO_8859_1));
+            buffer.flip();
+            Request request = parser.parse(buffer);
+            if (i + 7 < full.length()) {
+                assertNull(request);
+                buffer.compact();
+            } else {
+                assertNotNull(request);
+                assertEquals("/echo/abc", request.getPath());
+                assertEquals("test", request.getHeader("User-Agent"));
+            }
+        }
+    }
+
+    @Test
+    void waitsForTheWholeBody() {
+        ByteBuffer buffer = buffer("POST /files/a HTTP/1.1\r\nContent-Length: 10\r\n\r\nhello");
+        assertNull(parser.parse(buffer));
+
+        buffer.compact().put("world".getBytes(StandardCharsets.ISO_8859_1)).flip();
+        Request request = parser.parse(buffer);
+
+        assertNotNull(request);
+        assertEquals("helloworld", request.getBody());
+    }
+
+    @Test
+    void parsesPipelinedRequestsInOrder() {
+        ByteBuffer buffer = buffer("GET /a HTTP/1.1\r\n\r\nGET /b HTTP/1.1\r\n\r\nGET /c");
+
+        assertEquals("/a", parser.parse(buffer).getPath());
+        assertEquals("/b", parser.parse(buffer).getPath());
+        assertNull(parser.parse(buffer));
+        assertTrue(buffer.hasRemaining());
+    }
+
+    @Test
+    void acceptsBareLineFeeds() {
+        Request request = parser.parse(buffer("GET /a HTTP/1.1\nHost: localhost\n\n"));
+
+        assertNotNull(request);
+        assertEquals("/a", request.getPath());
+        assertEquals("localhost", request.getHeader("Host"));
+    }
+
+    @Test
+    void skipsEmptyLinesBeforeTheRequestLine() {
+        Request request = parser.parse(buffer("\r\n\r\nGET /a HTTP/1.1\r\n\r\n"));
+
+        assertNotNull(request);
+        assertEquals("/a", request.getPath());
+    }
+
+    @Test
+    void decodesPathAndHeaderValuesAsUtf8() {
+        ByteBuffer buffer = HttpRequestParser.allocateBuffer();
+        buffer.put("GET /echo/h\u00e9llo HTTP/1.1\r\nUser-Agent: na\u00efve\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        Request request = parser.parse(buffer.flip());
+
+        assertNotNull(request);
+        assertEquals("/echo/h\u00e9llo", request.getPath());
+        assertEquals("na\u00efve", request.getHeader("User-Agent"));
+    }
+
+    @Test
+    void rejectsTransferEncodingWithContentLength() {
+        assertEquals(400, statusOf("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\nContent-Length: 5\r\n\r\n"));
+    }
+
+    @Test
+    void rejectsUnsupportedTransferCodings() {
+        assertEquals(501, statusOf("POST /a HTTP/1.1\r\nTransfer-Encoding: gzip, chunked\r\n\r\n"));
+    }
+
+    @Test
+    void streamsChunkedBodies() {
+        Request request = parser.parse(
+                buffer("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n0\r\n\r\n"));
+
+        assertNotNull(request);
+        assertNotNull(parser.takeStreamedBody());
+    }
+
+    @Test
+    void rejectsMalformedHeads() {
+        assertEquals(400, statusOf("GET /a HTTP/1.1\r\nHost : localhost\r\n\r\n"));
+        assertEquals(400, statusOf("GET /a HTTP/1.1\r\nHost: localhost\r\n folded\r\n\r\n"));
+        assertEquals(400, statusOf("GET /a HTTP/1.1\r\nContent-Length: 1x\r\n\r\n"));
+        assertEquals(400, statusOf("GET HTTP/1.1\r\n\r\n"));
+        assertEquals(501, statusOf("BREW /pot HTTP/1.1\r\n\r\n"));
+        assertEquals(505, statusOf("GET /a HTTP/2.0\r\n\r\n"));
+    }
+
+    @Test
+    void enforcesLimits() {
+        assertEquals(431, statusOf(new HttpRequestParser(2, 64, 4, 4),
+                "GET /a HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\n\r\n"));
+        assertEquals(414, statusOf(new HttpRequestParser(2, 64, 4, 4),
+                "GET /" + "a".repeat(100) + " HTTP/1.1\r\n\r\n"));
+        assertEquals(413, statusOf(new HttpRequestParser(2, 64, 4, 4),
+                "POST /a HTTP/1.1\r\nContent-Length: 100\r\n\r\n"));
+    }
+}
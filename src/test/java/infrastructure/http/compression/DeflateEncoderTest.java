@@ -0,0 +1,82 @@
+package infrastructure.http.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class DeflateEncoderTest {
+    private static final byte[] BODY = "deflate me, deflate me again, and once more. ".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final DeflaterPool pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, 1);
+    private final DeflateEncoder encoder = new DeflateEncoder(pool);
+
+    private static byte[] inflate(byte[] encoded) throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(encoded))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void encodesAZlibStreamThatRoundTrips() throws IOException {
+        byte[] encoded = encoder.encode(BODY);
+
+        assertTrue(encoded.length < BODY.length);
+        assertArrayEquals(BODY, inflate(encoded));
+    }
+
+    @Test
+    void reusesThePooledDeflaterAfterReset() throws IOException {
+        byte[] first = encoder.encode(BODY);
+        byte[] second = encoder.encode(BODY);
+
+        assertEquals(1, pool.getIdleCount());
+        assertArrayEquals(first, second);
+        assertArrayEquals(BODY, inflate(second));
+    }
+
+    @Test
+    void wrappedStreamRoundTrips() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (OutputStream out = encoder.wrap(target)) {
+            out.write(BODY, 0, 1000);
+            out.flush();
+            out.write(BODY, 1000, BODY.length - 1000);
+        }
+
+        assertArrayEquals(BODY, inflate(target.toByteArray()));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void flushPushesOutWhatWasWritten() throws IOException, DataFormatException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputStream out = encoder.wrap(target);
+        out.write(BODY, 0, 100);
+        out.flush();
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(target.toByteArray());
+        byte[] inflated = new byte[200];
+        try {
+            assertEquals(100, inflater.inflate(inflated));
+        } finally {
+            inflater.end();
+        }
+        assertArrayEquals(Arrays.copyOf(BODY, 100), Arrays.copyOf(inflated, 100));
+        out.close();
+    }
+}
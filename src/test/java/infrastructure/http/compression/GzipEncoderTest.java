@@ -0,0 +1,86 @@
+package infrastructure.http.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Test;
+
+class GzipEncoderTest {
+    private static final byte[] BODY = "gzip me, gzip me again, and once more. ".repeat(200)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final DeflaterPool pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 1);
+    private final GzipEncoder encoder = new GzipEncoder(pool);
+
+    private static byte[] gunzip(byte[] encoded) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void encodesAGzipMemberThatRoundTrips() throws IOException {
+        byte[] encoded = encoder.encode(BODY);
+
+        assertTrue(encoded.length < BODY.length);
+        assertArrayEquals(BODY, gunzip(encoded));
+    }
+
+    @Test
+    void reusesThePooledDeflaterAfterReset() throws IOException {
+        byte[] first = encoder.encode(BODY);
+        assertEquals(1, pool.getIdleCount());
+
+        // Same Deflater again, a missing reset would leave it finished and the output empty
+        byte[] second = encoder.encode(BODY);
+        assertEquals(1, pool.getIdleCount());
+        assertArrayEquals(first, second);
+        assertArrayEquals(BODY, gunzip(second));
+    }
+
+    @Test
+    void wrappedStreamRoundTrips() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (OutputStream out = encoder.wrap(target)) {
+            out.write(BODY, 0, 1000);
+            out.flush();
+            out.write(BODY, 1000, BODY.length - 1000);
+        }
+
+        assertArrayEquals(BODY, gunzip(target.toByteArray()));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void flushPushesOutWhatWasWritten() throws IOException, DataFormatException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        OutputStream out = encoder.wrap(target);
+        out.write(BODY, 0, 100);
+        out.flush();
+
+        // Past the 10 byte header the flushed bytes inflate to everything written so far
+        byte[] flushed = target.toByteArray();
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(flushed, 10, flushed.length - 10);
+        byte[] inflated = new byte[200];
+        try {
+            assertEquals(100, inflater.inflate(inflated));
+        } finally {
+            inflater.end();
+        }
+        assertArrayEquals(Arrays.copyOf(BODY, 100), Arrays.copyOf(inflated, 100));
+        out.close();
+    }
+}
@@ -0,0 +1,75 @@
+package infrastructure.http.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class PooledDeflaterOutputStreamTest {
+    private static final byte[] BODY = "pooled ".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+    private final DeflaterPool pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, 4);
+
+    private static byte[] inflate(byte[] encoded) throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(encoded))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] deflate(byte[] body) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (PooledDeflaterOutputStream out = new PooledDeflaterOutputStream(target, pool)) {
+            out.write(body);
+        }
+        return target.toByteArray();
+    }
+
+    @Test
+    void returnsTheDeflaterOnClose() throws IOException {
+        assertArrayEquals(BODY, inflate(deflate(BODY)));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void releasedDeflaterIsResetForTheNextStream() throws IOException {
+        byte[] first = deflate(BODY);
+        byte[] second = deflate(BODY);
+
+        assertEquals(1, pool.getIdleCount());
+        assertArrayEquals(first, second);
+        assertArrayEquals(BODY, inflate(second));
+    }
+
+    @Test
+    void closingTwiceReleasesTheDeflaterOnce() throws IOException {
+        PooledDeflaterOutputStream out = new PooledDeflaterOutputStream(new ByteArrayOutputStream(), pool);
+        out.write(BODY);
+        out.close();
+        out.close();
+
+        assertEquals(1, pool.getIdleCount());
+        // Released twice, both borrowers would share one Deflater
+        Deflater first = pool.borrow();
+        Deflater second = pool.borrow();
+        assertNotSame(first, second);
+        pool.release(first);
+        pool.release(second);
+    }
+
+    @Test
+    void poolHandsOutTheReleasedDeflater() {
+        Deflater deflater = pool.borrow();
+        pool.release(deflater);
+
+        assertSame(deflater, pool.borrow());
+    }
+}
@@ -0,0 +1,127 @@
+package infrastructure.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import domain.model.StreamingBody;
+
+class ResponseStreamTest {
+    private SocketChannel server;
+    private SocketChannel client;
+
+    @BeforeEach
+    void connect() throws IOException {
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            client = SocketChannel.open(listener.getLocalAddress());
+            server = listener.accept();
+        }
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+        client.close();
+    }
+
+    // Writes the whole stream to the blocking channel and reads back what the client got
+    private String send(StreamingBody body, boolean chunked) throws IOException {
+        ResponseStream stream = new ResponseStream(body, chunked, null);
+        stream.writeTo(server);
+        assertTrue(stream.isComplete());
+        server.shutdownOutput();
+
+        InputStream in = Channels.newInputStream(client);
+        return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void endsWithTheLastChunk() throws IOException {
+        String sent = send(output -> output.write("hello".getBytes(StandardCharsets.US_ASCII)), true);
+
+        assertEquals("5\r\nhello\r\n0\r\n\r\n", sent);
+    }
+
+    @Test
+    void sendsOneChunkPerFlush() throws IOException {
+        String sent = send(output -> {
+            output.write("hello".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            output.write(" streaming world".getBytes(StandardCharsets.US_ASCII));
+        }, true);
+
+        assertEquals("5\r\nhello\r\n10\r\n streaming world\r\n0\r\n\r\n", sent);
+    }
+
+    @Test
+    void flushingNothingSendsNoChunk() throws IOException {
+        // An empty chunk would be read as the last one and end the body early
+        String sent = send(output -> {
+            output.flush();
+            output.write('a');
+            output.flush();
+            output.flush();
+            output.write('b');
+        }, true);
+
+        assertEquals("1\r\na\r\n1\r\nb\r\n0\r\n\r\n", sent);
+    }
+
+    @Test
+    void emptyBodyIsOnlyTheLastChunk() throws IOException {
+        assertEquals("0\r\n\r\n", send(output -> {
+        }, true));
+    }
+
+    @Test
+    void splitsLargeWritesIntoBoundedChunks() throws IOException {
+        byte[] body = new byte[ResponseStream.CHUNK_SIZE + 10];
+        Arrays.fill(body, (byte) 'x');
+        String sent = send(output -> output.write(body), true);
+
+        String size = Integer.toHexString(ResponseStream.CHUNK_SIZE);
+        assertTrue(sent.startsWith(size + "\r\n"));
+        assertTrue(sent.endsWith("\r\na\r\nxxxxxxxxxx\r\n0\r\n\r\n"));
+        assertEquals(size.length() + 2 + ResponseStream.CHUNK_SIZE + 2 + 15 + 5, sent.length());
+    }
+
+    @Test
+    void passesBytesThroughWithoutFraming() throws IOException {
+        String sent = send(output -> {
+            output.write("hello".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            output.write(" world".getBytes(StandardCharsets.US_ASCII));
+        }, false);
+
+        assertEquals("hello world", sent);
+    }
+
+    @Test
+    void failedBodyIsNotTerminated() throws IOException {
+        ResponseStream stream = new ResponseStream(output -> {
+            output.write("partial".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            throw new IOException("boom");
+        }, true, null);
+
+        assertThrows(IOException.class, () -> stream.writeTo(server));
+        server.shutdownOutput();
+        String sent = new String(Channels.newInputStream(client).readAllBytes(), StandardCharsets.US_ASCII);
+        assertEquals("7\r\npartial\r\n", sent);
+    }
+}